@@ -0,0 +1,14 @@
+package org.lucasimi.utils;
+
+import java.util.List;
+
+/**
+ * Metric that can prepare a block of points once, so that distances from a
+ * query to the whole block are evaluated in a tight loop rather than one
+ * interface call per point.
+ */
+public interface BatchMetric<T> extends Metric<T> {
+
+    public MetricBlock<T> block(List<T> points);
+
+}
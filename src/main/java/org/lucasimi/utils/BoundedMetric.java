@@ -0,0 +1,12 @@
+package org.lucasimi.utils;
+
+/**
+ * Metric supporting early termination. When the distance between x and y is
+ * at most bound the exact distance is returned, otherwise any value greater
+ * than bound may be returned.
+ */
+public interface BoundedMetric<T> extends Metric<T> {
+
+    public double eval(T x, T y, double bound);
+
+}
@@ -0,0 +1,50 @@
+package org.lucasimi.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * Fixed-size array of doubles stored outside the java heap, indexed by long
+ * and split across several direct buffers since a single buffer cannot
+ * exceed 2GB.
+ */
+public class DirectDoubles {
+
+    private static final int CHUNK_BITS = 27;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final long size;
+
+    private final DoubleBuffer[] chunks;
+
+    public DirectDoubles(long size) {
+        this.size = size;
+        int count = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+        this.chunks = new DoubleBuffer[count];
+        for (int c = 0; c < count; c++) {
+            long length = Math.min(1L << CHUNK_BITS, size - ((long) c << CHUNK_BITS));
+            this.chunks[c] = ByteBuffer.allocateDirect((int) length * Double.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asDoubleBuffer();
+        }
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    public long bytes() {
+        return this.size * Double.BYTES;
+    }
+
+    public double get(long i) {
+        return this.chunks[(int) (i >>> CHUNK_BITS)].get((int) (i & CHUNK_MASK));
+    }
+
+    public void set(long i, double value) {
+        this.chunks[(int) (i >>> CHUNK_BITS)].put((int) (i & CHUNK_MASK), value);
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.lucasimi.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Fixed-size array of ints stored outside the java heap, indexed by long
+ * and split across several direct buffers since a single buffer cannot
+ * exceed 2GB.
+ */
+public class DirectInts {
+
+    private static final int CHUNK_BITS = 28;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final long size;
+
+    private final IntBuffer[] chunks;
+
+    public DirectInts(long size) {
+        this.size = size;
+        int count = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+        this.chunks = new IntBuffer[count];
+        for (int c = 0; c < count; c++) {
+            long length = Math.min(1L << CHUNK_BITS, size - ((long) c << CHUNK_BITS));
+            this.chunks[c] = ByteBuffer.allocateDirect((int) length * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+        }
+    }
+
+    public long size() {
+        return this.size;
+    }
+
+    public long bytes() {
+        return this.size * Integer.BYTES;
+    }
+
+    public int get(long i) {
+        return this.chunks[(int) (i >>> CHUNK_BITS)].get((int) (i & CHUNK_MASK));
+    }
+
+    public void set(long i, int value) {
+        this.chunks[(int) (i >>> CHUNK_BITS)].put((int) (i & CHUNK_MASK), value);
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.lucasimi.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * Fixed-width double vectors stored outside the java heap in direct buffers.
+ * Vectors are split across several buffers since a single buffer cannot
+ * exceed 2GB.
+ */
+public class DirectVectors {
+
+    private final int size;
+
+    private final int dim;
+
+    private final int chunkSize;
+
+    private final DoubleBuffer[] chunks;
+
+    public DirectVectors(int size, int dim) {
+        this(size, dim, Integer.MAX_VALUE / Double.BYTES / Math.max(1, dim));
+    }
+
+    public DirectVectors(int size, int dim, int chunkSize) {
+        this.size = size;
+        this.dim = dim;
+        this.chunkSize = Math.max(1, chunkSize);
+        int count = (size + this.chunkSize - 1) / this.chunkSize;
+        this.chunks = new DoubleBuffer[count];
+        for (int c = 0; c < count; c++) {
+            int vectors = Math.min(this.chunkSize, size - c * this.chunkSize);
+            this.chunks[c] = ByteBuffer.allocateDirect(vectors * dim * Double.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asDoubleBuffer();
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int dimension() {
+        return this.dim;
+    }
+
+    public long bytes() {
+        return (long) this.size * this.dim * Double.BYTES;
+    }
+
+    public void set(int i, double[] vector) {
+        DoubleBuffer chunk = this.chunks[i / this.chunkSize];
+        int offset = (i % this.chunkSize) * this.dim;
+        for (int j = 0; j < this.dim; j++) {
+            chunk.put(offset + j, vector[j]);
+        }
+    }
+
+    public double[] get(int i) {
+        DoubleBuffer chunk = this.chunks[i / this.chunkSize];
+        int offset = (i % this.chunkSize) * this.dim;
+        double[] vector = new double[this.dim];
+        for (int j = 0; j < this.dim; j++) {
+            vector[j] = chunk.get(offset + j);
+        }
+        return vector;
+    }
+
+    public double euclidean(double[] query, int i) {
+        DoubleBuffer chunk = this.chunks[i / this.chunkSize];
+        int offset = (i % this.chunkSize) * this.dim;
+        double sum = 0.0;
+        for (int j = 0; j < this.dim; j++) {
+            double delta = query[j] - chunk.get(offset + j);
+            sum += delta * delta;
+        }
+        return Math.sqrt(sum);
+    }
+
+}
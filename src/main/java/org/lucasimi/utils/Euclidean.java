@@ -0,0 +1,118 @@
+package org.lucasimi.utils;
+
+import java.util.List;
+
+/**
+ * Euclidean distance on dense vectors. Blocks store the vectors contiguously,
+ * relative to the block centroid, along with their squared norms, so that a
+ * batch only needs one dot product per point: |q - x|^2 = |q|^2 + |x|^2 - 2 q.x.
+ * The expansion is only used as a filter: every point which may be within the
+ * bound, given the rounding error of the expansion, is evaluated again with
+ * {@link #eval}, so that the distances returned are exactly the pointwise ones.
+ */
+public class Euclidean implements BatchMetric<double[]> {
+
+    private static final double UNIT = Math.ulp(1.0);
+
+    private static class Block implements MetricBlock<double[]> {
+
+        private final int size;
+
+        private final int dim;
+
+        private final List<double[]> points;
+
+        private final double[] centroid;
+
+        private final double[] data;
+
+        private final double[] norms;
+
+        private Block(List<double[]> points) {
+            this.size = points.size();
+            this.dim = points.isEmpty() ? 0 : points.get(0).length;
+            this.points = points;
+            this.centroid = new double[this.dim];
+            this.data = new double[this.size * this.dim];
+            this.norms = new double[this.size];
+            for (double[] point : points) {
+                for (int j = 0; j < this.dim; j++) {
+                    this.centroid[j] += point[j] / this.size;
+                }
+            }
+            for (int i = 0; i < this.size; i++) {
+                double[] point = points.get(i);
+                int base = i * this.dim;
+                for (int j = 0; j < this.dim; j++) {
+                    this.data[base + j] = point[j] - this.centroid[j];
+                }
+                this.norms[i] = dot(this.data, base, this.data, base, this.dim);
+            }
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        @Override
+        public long memoryFootprint() {
+            return Footprint.object(2 * Integer.BYTES + 4 * Footprint.REFERENCE)
+                    + Footprint.array(this.centroid.length, Double.BYTES)
+                    + Footprint.array(this.data.length, Double.BYTES)
+                    + Footprint.array(this.norms.length, Double.BYTES);
+        }
+
+        @Override
+        public void evalMany(double[] query, double bound, double[] out) {
+            double[] shifted = Scratch.get(this.dim);
+            for (int j = 0; j < this.dim; j++) {
+                shifted[j] = query[j] - this.centroid[j];
+            }
+            double queryNorm = dot(shifted, 0, shifted, 0, this.dim);
+            double queryLength = Math.sqrt(queryNorm);
+            double errorFactor = (2 * this.dim + 8) * UNIT;
+            for (int i = 0; i < this.size; i++) {
+                double norm = this.norms[i];
+                double squared = queryNorm + norm - 2.0 * dot(shifted, 0, this.data, i * this.dim, this.dim);
+                double error = errorFactor * (queryNorm + norm);
+                double lower = Math.sqrt(Math.max(0.0, squared - error)) * (1.0 - 4 * UNIT)
+                        - 2 * UNIT * (queryLength + Math.sqrt(norm));
+                if (lower <= bound) {
+                    out[i] = Math.sqrt(squaredDistance(query, this.points.get(i)));
+                } else {
+                    out[i] = lower;
+                }
+            }
+        }
+
+    }
+
+    private static double dot(double[] x, int xOffset, double[] y, int yOffset, int length) {
+        double sum = 0.0;
+        for (int j = 0; j < length; j++) {
+            sum += x[xOffset + j] * y[yOffset + j];
+        }
+        return sum;
+    }
+
+    private static double squaredDistance(double[] x, double[] y) {
+        double sum = 0.0;
+        for (int j = 0; j < x.length; j++) {
+            double delta = x[j] - y[j];
+            sum += delta * delta;
+        }
+        return sum;
+    }
+
+    @Override
+    public double eval(double[] x, double[] y) {
+        return Math.sqrt(squaredDistance(x, y));
+    }
+
+    @Override
+    public MetricBlock<double[]> block(List<double[]> points) {
+        return new Block(points);
+    }
+
+}
@@ -0,0 +1,30 @@
+package org.lucasimi.utils;
+
+/**
+ * Rough heap size estimates, assuming a 64-bit JVM with compressed
+ * references and 8-byte object alignment.
+ */
+public class Footprint {
+
+    public static final int OBJECT_HEADER = 12;
+
+    public static final int ARRAY_HEADER = 16;
+
+    public static final int REFERENCE = 4;
+
+    private Footprint() {
+    }
+
+    public static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    public static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    public static long array(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.lucasimi.utils;
+
+public class Hamming implements Metric<long[]> {
+
+    @Override
+    public double eval(long[] x, long[] y) {
+        return distance(x, y);
+    }
+
+    public static int distance(long[] x, long[] y) {
+        int dist = 0;
+        for (int i = 0; i < x.length; i++) {
+            dist += Long.bitCount(x[i] ^ y[i]);
+        }
+        return dist;
+    }
+
+    public static int distance(long[] x, long[] data, int offset) {
+        int dist = 0;
+        for (int i = 0; i < x.length; i++) {
+            dist += Long.bitCount(x[i] ^ data[offset + i]);
+        }
+        return dist;
+    }
+
+}
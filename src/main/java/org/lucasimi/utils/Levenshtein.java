@@ -0,0 +1,90 @@
+package org.lucasimi.utils;
+
+public class Levenshtein implements BoundedMetric<String> {
+
+    private static final int Q = 2;
+
+    private static final int BUCKETS = 64;
+
+    @Override
+    public double eval(String x, String y) {
+        return distance(x, y, Math.max(x.length(), y.length()));
+    }
+
+    @Override
+    public double eval(String x, String y, double bound) {
+        if (bound >= Math.max(x.length(), y.length())) {
+            return distance(x, y, Math.max(x.length(), y.length()));
+        }
+        int maxDist = (int) Math.floor(bound);
+        if (Math.abs(x.length() - y.length()) > maxDist) {
+            return maxDist + 1;
+        }
+        int lowerBound = qgramBound(x, y);
+        if (lowerBound > maxDist) {
+            return lowerBound;
+        }
+        return distance(x, y, maxDist);
+    }
+
+    private static int bucket(String s, int i) {
+        return (s.charAt(i) * 31 + s.charAt(i + 1)) & (BUCKETS - 1);
+    }
+
+    private static int qgramBound(String x, String y) {
+        if (x.length() < Q || y.length() < Q) {
+            return 0;
+        }
+        int[] counts = new int[BUCKETS];
+        for (int i = 0; i + Q <= x.length(); i++) {
+            counts[bucket(x, i)]++;
+        }
+        for (int i = 0; i + Q <= y.length(); i++) {
+            counts[bucket(y, i)]--;
+        }
+        int diff = 0;
+        for (int c : counts) {
+            diff += Math.abs(c);
+        }
+        return (diff + 2 * Q - 1) / (2 * Q);
+    }
+
+    private static int distance(String x, String y, int maxDist) {
+        int n = x.length();
+        int m = y.length();
+        int big = maxDist + 1;
+        int[] prev = new int[m + 1];
+        int[] curr = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            prev[j] = Math.min(j, big);
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - maxDist);
+            int to = Math.min(m, i + maxDist);
+            curr[0] = Math.min(i, big);
+            int rowMin = curr[0];
+            if (from > 1) {
+                curr[from - 1] = big;
+                rowMin = big;
+            }
+            char xi = x.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = xi == y.charAt(j - 1) ? 0 : 1;
+                int dist = Math.min(prev[j - 1] + cost, Math.min(prev[j], curr[j - 1]) + 1);
+                curr[j] = Math.min(dist, big);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (to < m) {
+                curr[to + 1] = big;
+            }
+            if (rowMin > maxDist) {
+                return big;
+            }
+            int[] row = prev;
+            prev = curr;
+            curr = row;
+        }
+        return prev[m];
+    }
+
+}
@@ -0,0 +1,17 @@
+package org.lucasimi.utils;
+
+/**
+ * Block of points prepared for evaluating many distances from the same query
+ * in a single call. As for {@link BoundedMetric}, every distance which is at
+ * most bound must be exact, while any value greater than bound may be
+ * returned for the other points.
+ */
+public interface MetricBlock<T> {
+
+    public int size();
+
+    public void evalMany(T query, double bound, double[] out);
+
+    public long memoryFootprint();
+
+}
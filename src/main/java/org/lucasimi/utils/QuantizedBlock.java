@@ -0,0 +1,16 @@
+package org.lucasimi.utils;
+
+/**
+ * Compact encoding of a block of points. Lower bounds must never exceed the
+ * exact distance, so that candidates can be discarded before evaluating the
+ * exact metric.
+ */
+public interface QuantizedBlock<T> {
+
+    public int size();
+
+    public void lowerBounds(T query, double[] out);
+
+    public long memoryFootprint();
+
+}
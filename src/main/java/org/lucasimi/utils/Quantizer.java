@@ -0,0 +1,11 @@
+package org.lucasimi.utils;
+
+import java.util.List;
+
+public interface Quantizer<T> {
+
+    public QuantizedBlock<T> encode(List<T> points);
+
+    public boolean isCompatible(Metric<T> metric);
+
+}
@@ -0,0 +1,268 @@
+package org.lucasimi.utils;
+
+import java.util.List;
+
+/**
+ * Per-dimension scalar quantization of dense vectors. Lower bounds are computed
+ * with respect to the euclidean distance, hence this quantizer is only
+ * compatible with {@link Euclidean}.
+ */
+public class ScalarQuantizer implements Quantizer<double[]> {
+
+    public enum Precision {
+        INT8,
+        FLOAT16
+    }
+
+    private static final int INT8_LEVELS = 255;
+
+    private static final double HALF_MAX = 65504.0;
+
+    private static final double SLACK = 1e-9;
+
+    private static final float[] HALF_TABLE = new float[1 << 16];
+
+    static {
+        for (int i = 0; i < HALF_TABLE.length; i++) {
+            HALF_TABLE[i] = toFloat((short) i);
+        }
+    }
+
+    private final Precision precision;
+
+    public ScalarQuantizer(Precision precision) {
+        this.precision = precision;
+    }
+
+    public Precision getPrecision() {
+        return this.precision;
+    }
+
+    @Override
+    public boolean isCompatible(Metric<double[]> metric) {
+        return metric instanceof Euclidean;
+    }
+
+    @Override
+    public QuantizedBlock<double[]> encode(List<double[]> points) {
+        int dim = points.isEmpty() ? 0 : points.get(0).length;
+        switch (this.precision) {
+            case INT8:
+                return new Int8Block(points, dim);
+            case FLOAT16:
+                return new Float16Block(points, dim);
+            default:
+                throw new IllegalArgumentException("Unsupported precision " + this.precision);
+        }
+    }
+
+    private abstract static class Block implements QuantizedBlock<double[]> {
+
+        protected final int size;
+
+        protected final int dim;
+
+        protected final double[] offset;
+
+        protected final float[] errors;
+
+        protected Block(int size, int dim) {
+            this.size = size;
+            this.dim = dim;
+            this.offset = new double[dim];
+            this.errors = new float[size];
+        }
+
+        protected void setError(int i, double[] point, double[] decoded) {
+            double sum = 0.0;
+            for (int j = 0; j < this.dim; j++) {
+                double delta = point[j] - decoded[j];
+                sum += delta * delta;
+            }
+            this.errors[i] = Math.nextUp((float) Math.sqrt(sum));
+        }
+
+        protected double lowerBound(double squared, int i) {
+            return Math.sqrt(squared) * (1.0 - SLACK) - this.errors[i];
+        }
+
+        protected long baseFootprint() {
+            return Footprint.array(this.offset.length, Double.BYTES)
+                    + Footprint.array(this.errors.length, Float.BYTES);
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+    }
+
+    private static class Int8Block extends Block {
+
+        private final double[] scale;
+
+        private final byte[] codes;
+
+        private Int8Block(List<double[]> points, int dim) {
+            super(points.size(), dim);
+            this.scale = new double[dim];
+            this.codes = new byte[this.size * dim];
+            double[] max = new double[dim];
+            for (int j = 0; j < dim; j++) {
+                this.offset[j] = Double.POSITIVE_INFINITY;
+                max[j] = Double.NEGATIVE_INFINITY;
+            }
+            for (double[] point : points) {
+                for (int j = 0; j < dim; j++) {
+                    this.offset[j] = Math.min(this.offset[j], point[j]);
+                    max[j] = Math.max(max[j], point[j]);
+                }
+            }
+            for (int j = 0; j < dim; j++) {
+                this.scale[j] = (max[j] - this.offset[j]) / INT8_LEVELS;
+            }
+            double[] decoded = new double[dim];
+            int i = 0;
+            for (double[] point : points) {
+                for (int j = 0; j < dim; j++) {
+                    int code = 0;
+                    if (this.scale[j] > 0.0) {
+                        code = (int) Math.round((point[j] - this.offset[j]) / this.scale[j]);
+                        code = Math.max(0, Math.min(INT8_LEVELS, code));
+                    }
+                    this.codes[i * dim + j] = (byte) code;
+                    decoded[j] = this.offset[j] + code * this.scale[j];
+                }
+                setError(i, point, decoded);
+                i++;
+            }
+        }
+
+        @Override
+        public long memoryFootprint() {
+            return Footprint.object(2 * Integer.BYTES + 4 * Footprint.REFERENCE) + baseFootprint()
+                    + Footprint.array(this.scale.length, Double.BYTES)
+                    + Footprint.array(this.codes.length, Byte.BYTES);
+        }
+
+        @Override
+        public void lowerBounds(double[] query, double[] out) {
+            double[] shifted = Scratch.get(this.dim);
+            for (int j = 0; j < this.dim; j++) {
+                shifted[j] = query[j] - this.offset[j];
+            }
+            for (int i = 0; i < this.size; i++) {
+                int base = i * this.dim;
+                double sum = 0.0;
+                for (int j = 0; j < this.dim; j++) {
+                    double delta = shifted[j] - (this.codes[base + j] & 0xFF) * this.scale[j];
+                    sum += delta * delta;
+                }
+                out[i] = lowerBound(sum, i);
+            }
+        }
+
+    }
+
+    private static class Float16Block extends Block {
+
+        private final double[] scale;
+
+        private final short[] codes;
+
+        private Float16Block(List<double[]> points, int dim) {
+            super(points.size(), dim);
+            this.scale = new double[dim];
+            this.codes = new short[this.size * dim];
+            for (double[] point : points) {
+                for (int j = 0; j < dim; j++) {
+                    this.offset[j] += point[j] / this.size;
+                }
+            }
+            for (double[] point : points) {
+                for (int j = 0; j < dim; j++) {
+                    this.scale[j] = Math.max(this.scale[j], Math.abs(point[j] - this.offset[j]));
+                }
+            }
+            for (int j = 0; j < dim; j++) {
+                this.scale[j] = this.scale[j] > HALF_MAX ? this.scale[j] / HALF_MAX : 1.0;
+            }
+            double[] decoded = new double[dim];
+            int i = 0;
+            for (double[] point : points) {
+                for (int j = 0; j < dim; j++) {
+                    double value = (point[j] - this.offset[j]) / this.scale[j];
+                    short code = toHalf((float) Math.max(-HALF_MAX, Math.min(HALF_MAX, value)));
+                    this.codes[i * dim + j] = code;
+                    decoded[j] = this.offset[j] + HALF_TABLE[code & 0xFFFF] * this.scale[j];
+                }
+                setError(i, point, decoded);
+                i++;
+            }
+        }
+
+        @Override
+        public long memoryFootprint() {
+            return Footprint.object(2 * Integer.BYTES + 4 * Footprint.REFERENCE) + baseFootprint()
+                    + Footprint.array(this.scale.length, Double.BYTES)
+                    + Footprint.array(this.codes.length, Short.BYTES);
+        }
+
+        @Override
+        public void lowerBounds(double[] query, double[] out) {
+            double[] shifted = Scratch.get(this.dim);
+            for (int j = 0; j < this.dim; j++) {
+                shifted[j] = query[j] - this.offset[j];
+            }
+            for (int i = 0; i < this.size; i++) {
+                int base = i * this.dim;
+                double sum = 0.0;
+                for (int j = 0; j < this.dim; j++) {
+                    double delta = shifted[j] - HALF_TABLE[this.codes[base + j] & 0xFFFF] * this.scale[j];
+                    sum += delta * delta;
+                }
+                out[i] = lowerBound(sum, i);
+            }
+        }
+
+    }
+
+    private static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int abs = bits & 0x7FFFFFFF;
+        int rounded = abs + 0x1000;
+        if (rounded >= 0x47800000) {
+            if (abs >= 0x7F800000 && abs != 0x7F800000) {
+                return (short) (sign | 0x7E00);
+            }
+            return (short) (sign | 0x7C00);
+        }
+        if (rounded >= 0x38800000) {
+            return (short) (sign | ((rounded - 0x38000000) >>> 13));
+        }
+        if (rounded < 0x33000000) {
+            return (short) sign;
+        }
+        int exp = abs >>> 23;
+        int mantissa = (abs & 0x7FFFFF) | 0x800000;
+        return (short) (sign | ((mantissa + (0x800000 >>> (exp - 102))) >>> (126 - exp)));
+    }
+
+    private static float toFloat(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exp = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        if (exp == 0) {
+            float value = Math.scalb((float) mantissa, -24);
+            return sign == 0 ? value : -value;
+        } else if (exp == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        } else {
+            return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mantissa << 13));
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.lucasimi.utils;
+
+/**
+ * Per-thread scratch buffer for kernels that need a temporary copy of the
+ * query, so that scanning a block does not allocate.
+ */
+class Scratch {
+
+    private static final ThreadLocal<double[]> BUFFER = ThreadLocal.withInitial(() -> new double[0]);
+
+    private Scratch() {
+    }
+
+    static double[] get(int size) {
+        double[] buffer = BUFFER.get();
+        if (buffer.length < size) {
+            buffer = new double[size];
+            BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+}
@@ -0,0 +1,261 @@
+package org.lucasimi.vptree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.lucasimi.utils.Hamming;
+import org.lucasimi.utils.MaxHeap;
+import org.lucasimi.utils.Ordered;
+
+/**
+ * Vantage point tree specialized for fixed-width binary codes under the
+ * hamming distance. Codes are packed contiguously in tree order and the nodes
+ * follow an {@link ImplicitLayout}, so that only the integer radii need to be
+ * stored. Searches return the indices of the matching codes in the list passed
+ * to {@link Builder#build(List)}, and nearest neighbors come sorted from the
+ * nearest one.
+ */
+public class BinaryVPTree {
+
+    private final int words;
+
+    private final ImplicitLayout layout;
+
+    private final long[] codes;
+
+    private final int[] ids;
+
+    private final int[] radii;
+
+    private static final Random rand = new Random();
+
+    public static class Builder {
+
+        private int leafCapacity = 1;
+
+        private boolean randomPivoting = true;
+
+        public Builder withLeafCapacity(int leafCapacity) {
+            this.leafCapacity = leafCapacity;
+            return this;
+        }
+
+        public Builder withRandomPivoting(boolean randomPivoting) {
+            this.randomPivoting = randomPivoting;
+            return this;
+        }
+
+        public BinaryVPTree build(List<long[]> data) {
+            return new BinaryVPTree(this.leafCapacity, this.randomPivoting, data);
+        }
+
+    }
+
+    private BinaryVPTree(int leafCapacity, boolean randomPivoting, List<long[]> data) {
+        this.layout = new ImplicitLayout(leafCapacity);
+        this.words = data.isEmpty() ? 0 : data.get(0).length;
+        for (long[] code : data) {
+            if (code.length != this.words) {
+                throw new IllegalArgumentException("All codes must have the same length");
+            }
+        }
+        int size = data.size();
+        this.ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            this.ids[i] = i;
+        }
+        this.radii = new int[Math.toIntExact(this.layout.nodeSlots(size))];
+        new Splitter(data, randomPivoting).build(0, 0, size);
+        this.codes = new long[size * this.words];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(data.get(this.ids[i]), 0, this.codes, i * this.words, this.words);
+        }
+    }
+
+    private class Splitter {
+
+        private final List<long[]> data;
+
+        private final boolean randomPivoting;
+
+        private final int[] dist;
+
+        private final int[] sorted;
+
+        private final int[] counts;
+
+        private Splitter(List<long[]> data, boolean randomPivoting) {
+            this.data = data;
+            this.randomPivoting = randomPivoting;
+            this.dist = new int[data.size()];
+            this.sorted = new int[data.size()];
+            this.counts = new int[64 * BinaryVPTree.this.words + 2];
+        }
+
+        private void swap(int i, int j) {
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+
+        private void build(int node, int start, int end) {
+            if (layout.isLeaf(start, end)) {
+                return;
+            }
+            if (this.randomPivoting) {
+                swap(start, start + rand.nextInt(end - start));
+            }
+            long[] vantagePoint = this.data.get(ids[start]);
+            for (int j = start + 1; j < end; j++) {
+                this.dist[j] = Hamming.distance(vantagePoint, this.data.get(ids[j]));
+            }
+            countingSort(start + 1, end);
+            int mid = layout.mid(start, end);
+            radii[node] = this.dist[mid];
+            build(2 * node + 1, start + 1, mid);
+            build(2 * node + 2, mid, end);
+        }
+
+        private void countingSort(int start, int end) {
+            Arrays.fill(this.counts, 0);
+            for (int j = start; j < end; j++) {
+                this.counts[this.dist[j] + 1]++;
+            }
+            for (int d = 1; d < this.counts.length; d++) {
+                this.counts[d] += this.counts[d - 1];
+            }
+            for (int j = start; j < end; j++) {
+                int pos = start + this.counts[this.dist[j]]++;
+                this.sorted[pos] = ids[j];
+            }
+            for (int j = start; j < end; j++) {
+                ids[j] = this.sorted[j];
+            }
+            int j = start;
+            for (int d = 0; d + 1 < this.counts.length && j < end; d++) {
+                while (j < start + this.counts[d]) {
+                    this.dist[j++] = d;
+                }
+            }
+        }
+
+    }
+
+    private int distance(long[] target, int position) {
+        return Hamming.distance(target, this.codes, position * this.words);
+    }
+
+    private void ballSearch(long[] target, int eps, int node, int start, int end, Collection<Integer> points) {
+        if (this.layout.isLeaf(start, end)) {
+            for (int i = start; i < end; i++) {
+                if (distance(target, i) <= eps) {
+                    points.add(this.ids[i]);
+                }
+            }
+        } else {
+            int dist = distance(target, start);
+            if (dist <= eps) {
+                points.add(this.ids[start]);
+            }
+            int radius = this.radii[node];
+            int mid = this.layout.mid(start, end);
+            if (dist <= (long) radius + eps) {
+                ballSearch(target, eps, 2 * node + 1, start + 1, mid, points);
+            }
+            if (dist >= radius - eps) {
+                ballSearch(target, eps, 2 * node + 2, mid, end, points);
+            }
+        }
+    }
+
+    private class KNNSearch {
+
+        private final long[] target;
+
+        private final int neighbors;
+
+        private final MaxHeap<Ordered<Integer, Integer>> points;
+
+        private KNNSearch(long[] target, int neighbors) {
+            this.target = target;
+            this.neighbors = neighbors;
+            this.points = new MaxHeap<>(neighbors);
+        }
+
+        private int getRadius() {
+            if (this.points.size() < this.neighbors) {
+                return Integer.MAX_VALUE;
+            } else {
+                return this.points.getMax()
+                        .orElseThrow()
+                        .getOrder();
+            }
+        }
+
+        private void add(int dist, int position) {
+            if (dist <= getRadius()) {
+                this.points.add(new Ordered<>(dist, ids[position]));
+                while (this.points.size() > this.neighbors) {
+                    this.points.extractMax();
+                }
+            }
+        }
+
+        private void search(int node, int start, int end) {
+            if (layout.isLeaf(start, end)) {
+                for (int i = start; i < end; i++) {
+                    add(distance(this.target, i), i);
+                }
+            } else {
+                int dist = distance(this.target, start);
+                add(dist, start);
+                int radius = radii[node];
+                int mid = layout.mid(start, end);
+                if (dist < radius) {
+                    search(2 * node + 1, start + 1, mid);
+                    if (dist >= radius - getRadius()) {
+                        search(2 * node + 2, mid, end);
+                    }
+                } else {
+                    search(2 * node + 2, mid, end);
+                    if (dist <= radius + (long) getRadius()) {
+                        search(2 * node + 1, start + 1, mid);
+                    }
+                }
+            }
+        }
+
+        private SearchResult<Integer> getPoints() {
+            int size = this.points.size();
+            Object[] sorted = new Object[size];
+            double[] dists = new double[size];
+            for (int i = size - 1; i >= 0; i--) {
+                Ordered<Integer, Integer> furthest = this.points.extractMax().orElseThrow();
+                sorted[i] = furthest.getData();
+                dists[i] = furthest.getOrder();
+            }
+            return new SearchResult<>(sorted, dists, size);
+        }
+
+    }
+
+    public int size() {
+        return this.ids.length;
+    }
+
+    public Collection<Integer> ballSearch(long[] target, int eps) {
+        List<Integer> points = new ArrayList<>();
+        ballSearch(target, eps, 0, 0, this.ids.length, points);
+        return points;
+    }
+
+    public SearchResult<Integer> knnSearch(long[] target, int neighbors) {
+        KNNSearch knnSearch = new KNNSearch(target, neighbors);
+        knnSearch.search(0, 0, this.ids.length);
+        return knnSearch.getPoints();
+    }
+
+}
@@ -0,0 +1,44 @@
+package org.lucasimi.vptree;
+
+/**
+ * Implicit binary tree over positions {@code [0, size)}. The node covering
+ * {@code [start, end)} keeps its vantage point at {@code start}, its left child
+ * covers {@code [start + 1, mid)} and its right child covers
+ * {@code [mid, end)}. Node {@code i} has children {@code 2i + 1} and
+ * {@code 2i + 2}, and ranges of at most leafCapacity positions are leaves.
+ */
+class ImplicitLayout {
+
+    private final int leafCapacity;
+
+    ImplicitLayout(int leafCapacity) {
+        if (leafCapacity < 1) {
+            throw new IllegalArgumentException("Leaf capacity must be positive");
+        }
+        this.leafCapacity = leafCapacity;
+    }
+
+    int mid(int start, int end) {
+        return (start + 1 + end) >>> 1;
+    }
+
+    boolean isLeaf(int start, int end) {
+        return end - start <= this.leafCapacity;
+    }
+
+    long nodeSlots(int size) {
+        return nodeSlots(0, 0, size);
+    }
+
+    private long nodeSlots(long node, int start, int end) {
+        if (isLeaf(start, end)) {
+            return 0;
+        } else {
+            int mid = mid(start, end);
+            long left = nodeSlots(2 * node + 1, start + 1, mid);
+            long right = nodeSlots(2 * node + 2, mid, end);
+            return Math.max(node + 1, Math.max(left, right));
+        }
+    }
+
+}
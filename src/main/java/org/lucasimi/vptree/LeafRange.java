@@ -0,0 +1,42 @@
+package org.lucasimi.vptree;
+
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of a range of the array shared by all the leaves of a tree,
+ * so that leaves do not need a list of their own. The array is swapped for a
+ * trimmed copy once the tree is built.
+ */
+class LeafRange<T> extends AbstractList<T> implements RandomAccess {
+
+    private Object[] data;
+
+    private final int start;
+
+    private final int end;
+
+    LeafRange(Object[] data, int start, int end) {
+        this.data = data;
+        this.start = start;
+        this.end = end;
+    }
+
+    void setData(Object[] data) {
+        this.data = data;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, size());
+        return (T) this.data[this.start + index];
+    }
+
+    @Override
+    public int size() {
+        return this.end - this.start;
+    }
+
+}
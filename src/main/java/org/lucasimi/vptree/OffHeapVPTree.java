@@ -0,0 +1,282 @@
+package org.lucasimi.vptree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.lucasimi.utils.DirectDoubles;
+import org.lucasimi.utils.DirectInts;
+import org.lucasimi.utils.DirectVectors;
+import org.lucasimi.utils.MaxHeap;
+import org.lucasimi.utils.Ordered;
+
+/**
+ * Vantage point tree for dense vectors under the euclidean distance, where
+ * points, indices and node radii all live in direct buffers outside the java
+ * heap. Points are stored in tree order and nodes follow an
+ * {@link ImplicitLayout}. Searches return the indices of the matching points
+ * in the list passed to {@link Builder#build(List)}, and nearest neighbors
+ * come sorted from the nearest one.
+ */
+public class OffHeapVPTree {
+
+    private final int dim;
+
+    private final ImplicitLayout layout;
+
+    private final DirectVectors points;
+
+    private final DirectInts ids;
+
+    private final DirectDoubles radii;
+
+    private static final Random rand = new Random();
+
+    public static class Builder {
+
+        private int leafCapacity = 1;
+
+        private boolean randomPivoting = true;
+
+        public Builder withLeafCapacity(int leafCapacity) {
+            this.leafCapacity = leafCapacity;
+            return this;
+        }
+
+        public Builder withRandomPivoting(boolean randomPivoting) {
+            this.randomPivoting = randomPivoting;
+            return this;
+        }
+
+        public OffHeapVPTree build(List<double[]> data) {
+            return new OffHeapVPTree(this.leafCapacity, this.randomPivoting, data);
+        }
+
+    }
+
+    private OffHeapVPTree(int leafCapacity, boolean randomPivoting, List<double[]> data) {
+        this.layout = new ImplicitLayout(leafCapacity);
+        this.dim = data.isEmpty() ? 0 : data.get(0).length;
+        for (double[] point : data) {
+            if (point.length != this.dim) {
+                throw new IllegalArgumentException("All points must have the same dimension");
+            }
+        }
+        int size = data.size();
+        this.radii = new DirectDoubles(this.layout.nodeSlots(size));
+        Splitter splitter = new Splitter(data, randomPivoting);
+        splitter.build(0, 0, size);
+        this.ids = new DirectInts(size);
+        this.points = new DirectVectors(size, this.dim);
+        for (int i = 0; i < size; i++) {
+            int id = splitter.ids[i];
+            this.ids.set(i, id);
+            this.points.set(i, data.get(id));
+        }
+    }
+
+    private class Splitter {
+
+        private final List<double[]> data;
+
+        private final boolean randomPivoting;
+
+        private final int[] ids;
+
+        private final double[] dist;
+
+        private Splitter(List<double[]> data, boolean randomPivoting) {
+            this.data = data;
+            this.randomPivoting = randomPivoting;
+            this.ids = new int[data.size()];
+            this.dist = new double[data.size()];
+            for (int i = 0; i < this.ids.length; i++) {
+                this.ids[i] = i;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int id = this.ids[i];
+            this.ids[i] = this.ids[j];
+            this.ids[j] = id;
+            double d = this.dist[i];
+            this.dist[i] = this.dist[j];
+            this.dist[j] = d;
+        }
+
+        private double euclidean(double[] x, double[] y) {
+            double sum = 0.0;
+            for (int j = 0; j < x.length; j++) {
+                double delta = x[j] - y[j];
+                sum += delta * delta;
+            }
+            return Math.sqrt(sum);
+        }
+
+        private void build(long node, int start, int end) {
+            if (layout.isLeaf(start, end)) {
+                return;
+            }
+            if (this.randomPivoting) {
+                swap(start, start + rand.nextInt(end - start));
+            }
+            double[] vantagePoint = this.data.get(this.ids[start]);
+            for (int j = start + 1; j < end; j++) {
+                this.dist[j] = euclidean(vantagePoint, this.data.get(this.ids[j]));
+            }
+            int mid = layout.mid(start, end);
+            select(start + 1, end, mid);
+            radii.set(node, this.dist[mid]);
+            build(2 * node + 1, start + 1, mid);
+            build(2 * node + 2, mid, end);
+        }
+
+        private void select(int start, int end, int k) {
+            int lo = start;
+            int hi = end - 1;
+            while (lo < hi) {
+                double pivot = this.dist[lo + rand.nextInt(hi - lo + 1)];
+                int lt = lo;
+                int gt = hi;
+                int j = lo;
+                while (j <= gt) {
+                    if (this.dist[j] < pivot) {
+                        swap(lt++, j++);
+                    } else if (this.dist[j] > pivot) {
+                        swap(j, gt--);
+                    } else {
+                        j++;
+                    }
+                }
+                if (k < lt) {
+                    hi = lt - 1;
+                } else if (k > gt) {
+                    lo = gt + 1;
+                } else {
+                    return;
+                }
+            }
+        }
+
+    }
+
+    private void ballSearch(double[] target, double eps, long node, int start, int end, Collection<Integer> found) {
+        if (this.layout.isLeaf(start, end)) {
+            for (int i = start; i < end; i++) {
+                if (this.points.euclidean(target, i) <= eps) {
+                    found.add(this.ids.get(i));
+                }
+            }
+        } else {
+            double dist = this.points.euclidean(target, start);
+            if (dist <= eps) {
+                found.add(this.ids.get(start));
+            }
+            double radius = this.radii.get(node);
+            int mid = this.layout.mid(start, end);
+            if (dist <= radius + eps) {
+                ballSearch(target, eps, 2 * node + 1, start + 1, mid, found);
+            }
+            if (dist >= radius - eps) {
+                ballSearch(target, eps, 2 * node + 2, mid, end, found);
+            }
+        }
+    }
+
+    private class KNNSearch {
+
+        private final double[] target;
+
+        private final int neighbors;
+
+        private final MaxHeap<Ordered<Double, Integer>> found;
+
+        private KNNSearch(double[] target, int neighbors) {
+            this.target = target;
+            this.neighbors = neighbors;
+            this.found = new MaxHeap<>(neighbors);
+        }
+
+        private double getRadius() {
+            if (this.found.size() < this.neighbors) {
+                return Double.POSITIVE_INFINITY;
+            } else {
+                return this.found.getMax()
+                        .orElseThrow()
+                        .getOrder();
+            }
+        }
+
+        private void add(double dist, int position) {
+            if (dist <= getRadius()) {
+                this.found.add(new Ordered<>(dist, ids.get(position)));
+                while (this.found.size() > this.neighbors) {
+                    this.found.extractMax();
+                }
+            }
+        }
+
+        private void search(long node, int start, int end) {
+            if (layout.isLeaf(start, end)) {
+                for (int i = start; i < end; i++) {
+                    add(points.euclidean(this.target, i), i);
+                }
+            } else {
+                double dist = points.euclidean(this.target, start);
+                add(dist, start);
+                double radius = radii.get(node);
+                int mid = layout.mid(start, end);
+                if (dist < radius) {
+                    search(2 * node + 1, start + 1, mid);
+                    if (dist >= radius - getRadius()) {
+                        search(2 * node + 2, mid, end);
+                    }
+                } else {
+                    search(2 * node + 2, mid, end);
+                    if (dist <= radius + getRadius()) {
+                        search(2 * node + 1, start + 1, mid);
+                    }
+                }
+            }
+        }
+
+        private SearchResult<Integer> getPoints() {
+            int size = this.found.size();
+            Object[] sorted = new Object[size];
+            double[] dists = new double[size];
+            for (int i = size - 1; i >= 0; i--) {
+                Ordered<Double, Integer> furthest = this.found.extractMax().orElseThrow();
+                sorted[i] = furthest.getData();
+                dists[i] = furthest.getOrder();
+            }
+            return new SearchResult<>(sorted, dists, size);
+        }
+
+    }
+
+    public int size() {
+        return this.points.size();
+    }
+
+    public int dimension() {
+        return this.dim;
+    }
+
+    public long offHeapBytes() {
+        return this.points.bytes() + this.ids.bytes() + this.radii.bytes();
+    }
+
+    public Collection<Integer> ballSearch(double[] target, double eps) {
+        List<Integer> found = new ArrayList<>();
+        ballSearch(target, eps, 0, 0, size(), found);
+        return found;
+    }
+
+    public SearchResult<Integer> knnSearch(double[] target, int neighbors) {
+        KNNSearch knnSearch = new KNNSearch(target, neighbors);
+        knnSearch.search(0, 0, size());
+        return knnSearch.getPoints();
+    }
+
+}
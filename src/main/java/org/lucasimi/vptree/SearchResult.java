@@ -0,0 +1,77 @@
+package org.lucasimi.vptree;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Read-only list of search results together with their distances from the
+ * query, which are kept in a primitive array so that callers do not need to
+ * evaluate the metric again to rank the results.
+ */
+public class SearchResult<T> extends AbstractList<T> {
+
+    private Object[] points;
+
+    private double[] distances;
+
+    private int size;
+
+    SearchResult(int capacity) {
+        this(new Object[Math.max(1, capacity)], new double[Math.max(1, capacity)], 0);
+    }
+
+    SearchResult(Object[] points, double[] distances, int size) {
+        this.points = points;
+        this.distances = distances;
+        this.size = size;
+    }
+
+    void append(T point, double distance) {
+        if (this.size == this.points.length) {
+            int capacity = 2 * this.points.length;
+            this.points = Arrays.copyOf(this.points, capacity);
+            this.distances = Arrays.copyOf(this.distances, capacity);
+        }
+        this.points[this.size] = point;
+        this.distances[this.size] = distance;
+        this.size++;
+    }
+
+    SearchResult<T> sorted() {
+        Integer[] order = new Integer[this.size];
+        for (int i = 0; i < this.size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(this.distances[i], this.distances[j]));
+        Object[] sortedPoints = new Object[this.size];
+        double[] sortedDistances = new double[this.size];
+        for (int i = 0; i < this.size; i++) {
+            sortedPoints[i] = this.points[order[i]];
+            sortedDistances[i] = this.distances[order[i]];
+        }
+        return new SearchResult<>(sortedPoints, sortedDistances, this.size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        Objects.checkIndex(index, this.size);
+        return (T) this.points[index];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    public double getDistance(int index) {
+        Objects.checkIndex(index, this.size);
+        return this.distances[index];
+    }
+
+    public double[] getDistances() {
+        return Arrays.copyOf(this.distances, this.size);
+    }
+
+}
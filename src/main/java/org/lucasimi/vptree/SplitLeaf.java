@@ -2,16 +2,41 @@ package org.lucasimi.vptree;
 
 import java.util.Collection;
 
+import org.lucasimi.utils.MetricBlock;
+import org.lucasimi.utils.QuantizedBlock;
+
 public class SplitLeaf<T> implements SplitTree<T> {
 
     private Collection<T> data;
 
+    private QuantizedBlock<T> codes;
+
+    private MetricBlock<T> block;
+
     public Collection<T> getData() {
         return this.data;
     }
 
+    public QuantizedBlock<T> getCodes() {
+        return this.codes;
+    }
+
+    public MetricBlock<T> getBlock() {
+        return this.block;
+    }
+
     public SplitLeaf(Collection<T> data) {
+        this(data, null);
+    }
+
+    public SplitLeaf(Collection<T> data, QuantizedBlock<T> codes) {
+        this(data, codes, null);
+    }
+
+    public SplitLeaf(Collection<T> data, QuantizedBlock<T> codes, MetricBlock<T> block) {
         this.data = data;
+        this.codes = codes;
+        this.block = block;
     }
 
     @Override
@@ -0,0 +1,229 @@
+package org.lucasimi.vptree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class TreeStats {
+
+    public static class Level {
+
+        private long nodes;
+
+        private double radiusMin = Double.POSITIVE_INFINITY;
+
+        private double radiusMax = Double.NEGATIVE_INFINITY;
+
+        private double radiusSum;
+
+        private long visits;
+
+        private long bothVisits;
+
+        public long getNodes() {
+            return this.nodes;
+        }
+
+        public double getRadiusMin() {
+            return this.radiusMin;
+        }
+
+        public double getRadiusMax() {
+            return this.radiusMax;
+        }
+
+        public double getRadiusMean() {
+            return this.nodes == 0 ? 0.0 : this.radiusSum / this.nodes;
+        }
+
+        public long getVisits() {
+            return this.visits;
+        }
+
+        public double getOverlap() {
+            return this.visits == 0 ? 0.0 : (double) this.bothVisits / this.visits;
+        }
+
+        private void merge(Level other) {
+            this.nodes += other.nodes;
+            this.radiusMin = Math.min(this.radiusMin, other.radiusMin);
+            this.radiusMax = Math.max(this.radiusMax, other.radiusMax);
+            this.radiusSum += other.radiusSum;
+            this.visits += other.visits;
+            this.bothVisits += other.bothVisits;
+        }
+
+    }
+
+    private long size;
+
+    private long nodes;
+
+    private long leaves;
+
+    private long collapsed;
+
+    private long queries;
+
+    private long evaluations;
+
+    private long avoided;
+
+    private long leafVisits;
+
+    private final TreeMap<Integer, Long> leafDepths = new TreeMap<>();
+
+    private final TreeMap<Integer, Long> leafSizes = new TreeMap<>();
+
+    private final List<Level> levels = new ArrayList<>();
+
+    private Level getLevel(int depth) {
+        while (this.levels.size() <= depth) {
+            this.levels.add(new Level());
+        }
+        return this.levels.get(depth);
+    }
+
+    void addNode(int depth, double radius, boolean collapsedLeft) {
+        Level level = getLevel(depth);
+        level.nodes++;
+        level.radiusMin = Math.min(level.radiusMin, radius);
+        level.radiusMax = Math.max(level.radiusMax, radius);
+        level.radiusSum += radius;
+        this.nodes++;
+        if (collapsedLeft) {
+            this.collapsed++;
+        }
+    }
+
+    void addLeaf(int depth, int leafSize) {
+        this.leaves++;
+        this.size += leafSize;
+        this.leafDepths.merge(depth, 1L, Long::sum);
+        this.leafSizes.merge(leafSize, 1L, Long::sum);
+    }
+
+    void addVisit(int depth, boolean both) {
+        Level level = getLevel(depth);
+        level.visits++;
+        if (both) {
+            level.bothVisits++;
+        }
+    }
+
+    void addLeafVisit() {
+        this.leafVisits++;
+    }
+
+    void addQuery(long queryEvaluations, long queryAvoided) {
+        this.queries++;
+        this.evaluations += queryEvaluations;
+        this.avoided += queryAvoided;
+    }
+
+    TreeStats merge(TreeStats other) {
+        this.size += other.size;
+        this.nodes += other.nodes;
+        this.leaves += other.leaves;
+        this.collapsed += other.collapsed;
+        this.queries += other.queries;
+        this.evaluations += other.evaluations;
+        this.avoided += other.avoided;
+        this.leafVisits += other.leafVisits;
+        other.leafDepths.forEach((k, v) -> this.leafDepths.merge(k, v, Long::sum));
+        other.leafSizes.forEach((k, v) -> this.leafSizes.merge(k, v, Long::sum));
+        for (int depth = 0; depth < other.levels.size(); depth++) {
+            getLevel(depth).merge(other.levels.get(depth));
+        }
+        return this;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    public long getLeaves() {
+        return this.leaves;
+    }
+
+    public long getCollapsed() {
+        return this.collapsed;
+    }
+
+    public int getMaxDepth() {
+        return this.leafDepths.isEmpty() ? 0 : this.leafDepths.lastKey();
+    }
+
+    public double getMeanLeafDepth() {
+        double sum = 0.0;
+        for (Map.Entry<Integer, Long> entry : this.leafDepths.entrySet()) {
+            sum += (double) entry.getKey() * entry.getValue();
+        }
+        return this.leaves == 0 ? 0.0 : sum / this.leaves;
+    }
+
+    public Map<Integer, Long> getLeafDepths() {
+        return Collections.unmodifiableMap(this.leafDepths);
+    }
+
+    public Map<Integer, Long> getLeafSizes() {
+        return Collections.unmodifiableMap(this.leafSizes);
+    }
+
+    public List<Level> getLevels() {
+        return Collections.unmodifiableList(this.levels);
+    }
+
+    public long getQueries() {
+        return this.queries;
+    }
+
+    public double getEvaluationsPerQuery() {
+        return this.queries == 0 ? 0.0 : (double) this.evaluations / this.queries;
+    }
+
+    public double getAvoidedEvaluationsPerQuery() {
+        return this.queries == 0 ? 0.0 : (double) this.avoided / this.queries;
+    }
+
+    public double getLeafVisitsPerQuery() {
+        return this.queries == 0 ? 0.0 : (double) this.leafVisits / this.queries;
+    }
+
+    public double getPruningEfficiency() {
+        if (this.queries == 0 || this.size == 0) {
+            return 0.0;
+        } else {
+            return Math.max(0.0, 1.0 - getEvaluationsPerQuery() / this.size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("size=%d, nodes=%d, leaves=%d, collapsed=%d, maxDepth=%d, meanLeafDepth=%.2f",
+                this.size, this.nodes, this.leaves, this.collapsed, getMaxDepth(), getMeanLeafDepth()));
+        if (this.queries > 0) {
+            builder.append(String.format(
+                    "%nqueries=%d, evaluations/query=%.1f, avoided/query=%.1f, leafVisits/query=%.1f, "
+                            + "pruningEfficiency=%.4f",
+                    this.queries, getEvaluationsPerQuery(), getAvoidedEvaluationsPerQuery(), getLeafVisitsPerQuery(),
+                    getPruningEfficiency()));
+        }
+        builder.append(String.format("%nleafSizes=%s%nleafDepths=%s", this.leafSizes, this.leafDepths));
+        for (int depth = 0; depth < this.levels.size(); depth++) {
+            Level level = this.levels.get(depth);
+            builder.append(String.format("%nlevel %d: nodes=%d, radius=[%.4g, %.4g, %.4g], overlap=%.4f",
+                    depth, level.nodes, level.getRadiusMin(), level.getRadiusMean(), level.getRadiusMax(),
+                    level.getOverlap()));
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.lucasimi.vptree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToLongBiFunction;
+
+class Tuner<T> {
+
+    private static final int[] LEAF_CAPACITIES = { 1, 4, 16, 64, 256 };
+
+    private static final double[] LEAF_RADIUS_FACTORS = { 0.0, 0.5, 1.0, 2.0 };
+
+    private static final boolean[] RANDOM_PIVOTING = { true, false };
+
+    private static final int REPETITIONS = 5;
+
+    private static final double TIE_TOLERANCE = 0.05;
+
+    private final VPTree.Builder<T> template;
+
+    private final Collection<T> sample;
+
+    private final Collection<T> queries;
+
+    Tuner(VPTree.Builder<T> template, Collection<T> sample, Collection<T> queries) {
+        if (sample.isEmpty() || queries.isEmpty()) {
+            throw new IllegalArgumentException("Sample and queries must not be empty");
+        }
+        this.template = template;
+        this.sample = sample;
+        this.queries = queries;
+    }
+
+    private VPTree<T> build(int leafCapacity, double leafRadius, boolean randomPivoting) {
+        return this.template.copy()
+                .withLeafCapacity(leafCapacity)
+                .withLeafRadius(leafRadius)
+                .withRandomPivoting(randomPivoting)
+                .build(this.sample);
+    }
+
+    double knnRadius(int neighbors) {
+        VPTree<T> vpTree = build(LEAF_CAPACITIES[LEAF_CAPACITIES.length / 2], 0.0, true);
+        List<Double> radii = new ArrayList<>(this.queries.size());
+        for (T query : this.queries) {
+            SearchResult<T> res = vpTree.knnSearch(query, neighbors);
+            radii.add(res.isEmpty() ? 0.0 : res.getDistance(res.size() - 1));
+        }
+        radii.sort(null);
+        return radii.get(radii.size() / 2);
+    }
+
+    TuningReport tune(double scale, ToLongBiFunction<VPTree<T>, T> workload) {
+        List<TuningReport.Candidate> candidates = new ArrayList<>();
+        for (int leafCapacity : LEAF_CAPACITIES) {
+            if (leafCapacity > 1 && leafCapacity >= this.sample.size()) {
+                continue;
+            }
+            for (double factor : LEAF_RADIUS_FACTORS) {
+                for (boolean randomPivoting : RANDOM_PIVOTING) {
+                    TuningReport.Candidate candidate = measure(leafCapacity, factor * scale, randomPivoting,
+                            workload);
+                    candidates.add(candidate);
+                }
+            }
+        }
+        return new TuningReport(candidates, best(candidates));
+    }
+
+    private static TuningReport.Candidate best(List<TuningReport.Candidate> candidates) {
+        double fastest = Double.POSITIVE_INFINITY;
+        for (TuningReport.Candidate candidate : candidates) {
+            fastest = Math.min(fastest, candidate.getNanosPerQuery());
+        }
+        TuningReport.Candidate best = null;
+        for (TuningReport.Candidate candidate : candidates) {
+            if (candidate.getNanosPerQuery() <= fastest * (1.0 + TIE_TOLERANCE) && (best == null
+                    || candidate.getEvaluationsPerQuery() < best.getEvaluationsPerQuery())) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private TuningReport.Candidate measure(int leafCapacity, double leafRadius, boolean randomPivoting,
+            ToLongBiFunction<VPTree<T>, T> workload) {
+        long t0 = System.nanoTime();
+        VPTree<T> vpTree = build(leafCapacity, leafRadius, randomPivoting);
+        long t1 = System.nanoTime();
+        for (T query : this.queries) {
+            workload.applyAsLong(vpTree, query);
+        }
+        long evaluations = 0;
+        long[] times = new long[REPETITIONS];
+        for (int r = 0; r < REPETITIONS; r++) {
+            evaluations = 0;
+            long t2 = System.nanoTime();
+            for (T query : this.queries) {
+                evaluations += workload.applyAsLong(vpTree, query);
+            }
+            times[r] = System.nanoTime() - t2;
+        }
+        Arrays.sort(times);
+        int size = this.queries.size();
+        return new TuningReport.Candidate(leafCapacity, leafRadius, randomPivoting, t1 - t0,
+                (double) evaluations / size, (double) times[REPETITIONS / 2] / size);
+    }
+
+}
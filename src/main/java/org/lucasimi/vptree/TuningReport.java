@@ -0,0 +1,101 @@
+package org.lucasimi.vptree;
+
+import java.util.Collections;
+import java.util.List;
+
+public class TuningReport {
+
+    public static class Candidate {
+
+        private final int leafCapacity;
+
+        private final double leafRadius;
+
+        private final boolean randomPivoting;
+
+        private final long buildNanos;
+
+        private final double evaluationsPerQuery;
+
+        private final double nanosPerQuery;
+
+        Candidate(int leafCapacity, double leafRadius, boolean randomPivoting, long buildNanos,
+                double evaluationsPerQuery, double nanosPerQuery) {
+            this.leafCapacity = leafCapacity;
+            this.leafRadius = leafRadius;
+            this.randomPivoting = randomPivoting;
+            this.buildNanos = buildNanos;
+            this.evaluationsPerQuery = evaluationsPerQuery;
+            this.nanosPerQuery = nanosPerQuery;
+        }
+
+        public int getLeafCapacity() {
+            return this.leafCapacity;
+        }
+
+        public double getLeafRadius() {
+            return this.leafRadius;
+        }
+
+        public boolean isRandomPivoting() {
+            return this.randomPivoting;
+        }
+
+        public long getBuildNanos() {
+            return this.buildNanos;
+        }
+
+        public double getEvaluationsPerQuery() {
+            return this.evaluationsPerQuery;
+        }
+
+        public double getNanosPerQuery() {
+            return this.nanosPerQuery;
+        }
+
+        public double getNanosPerEvaluation() {
+            if (this.evaluationsPerQuery == 0.0) {
+                return 0.0;
+            } else {
+                return this.nanosPerQuery / this.evaluationsPerQuery;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("leafCapacity=%d, leafRadius=%.4g, randomPivoting=%b: "
+                    + "%.1f evaluations/query, %.0fns/query, %.1fns/evaluation, build %dms",
+                    this.leafCapacity, this.leafRadius, this.randomPivoting, this.evaluationsPerQuery,
+                    this.nanosPerQuery, getNanosPerEvaluation(), this.buildNanos / 1_000_000);
+        }
+
+    }
+
+    private final List<Candidate> candidates;
+
+    private final Candidate best;
+
+    TuningReport(List<Candidate> candidates, Candidate best) {
+        this.candidates = Collections.unmodifiableList(candidates);
+        this.best = best;
+    }
+
+    public List<Candidate> getCandidates() {
+        return this.candidates;
+    }
+
+    public Candidate getBest() {
+        return this.best;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("best: ").append(this.best);
+        for (Candidate candidate : this.candidates) {
+            builder.append(System.lineSeparator()).append("  ").append(candidate);
+        }
+        return builder.toString();
+    }
+
+}
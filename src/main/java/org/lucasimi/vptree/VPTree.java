@@ -1,50 +1,147 @@
 package org.lucasimi.vptree;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.lucasimi.utils.BatchMetric;
+import org.lucasimi.utils.BoundedMetric;
+import org.lucasimi.utils.Footprint;
 import org.lucasimi.utils.MaxHeap;
 import org.lucasimi.utils.Metric;
+import org.lucasimi.utils.MetricBlock;
 import org.lucasimi.utils.Ordered;
 import org.lucasimi.utils.Pivoter;
+import org.lucasimi.utils.QuantizedBlock;
+import org.lucasimi.utils.Quantizer;
 
 public class VPTree<T> {
 
     private final Metric<T> metric;
 
+    private final BoundedMetric<T> boundedMetric;
+
+    private final BatchMetric<T> batchMetric;
+
+    private final Metric<T> lowerBound;
+
+    private final LongAdder evaluations = new LongAdder();
+
+    private final LongAdder avoidedEvaluations = new LongAdder();
+
     private final SplitTree<T> tree;
 
     private final int leafCapacity;
 
     private final double leafRadius;
 
-    private final List<Ordered<Double, T>> dataset;
+    private final Quantizer<T> quantizer;
+
+    private final boolean compaction;
+
+    private final Map<T, List<T>> duplicates;
+
+    private List<Ordered<Double, T>> dataset;
 
-    private final Collection<T> centers;
+    private Object[] leafData;
+
+    private int leafSize;
+
+    private List<LeafRange<T>> leafRanges;
 
     private static final Random rand = new Random();
 
+    private static final int PARALLEL_DEPTH = 8;
+
+    private static final int LOCALITY_DEPTH = 8;
+
+    private class Evaluator {
+
+        private long evaluations = 0;
+
+        private long avoided = 0;
+
+        private double eval(T x, T y, double bound) {
+            if (VPTree.this.lowerBound != null) {
+                double lower = VPTree.this.lowerBound.eval(x, y);
+                if (lower > bound) {
+                    this.avoided++;
+                    return lower;
+                }
+            }
+            this.evaluations++;
+            return distance(x, y, bound);
+        }
+
+        private double[] evalMany(T x, MetricBlock<T> block, double bound, double[] buffer) {
+            double[] dists = buffer;
+            if (dists.length < block.size()) {
+                dists = new double[block.size()];
+            }
+            block.evalMany(x, bound, dists);
+            this.evaluations += block.size();
+            return dists;
+        }
+
+        private long getEvaluations() {
+            return this.evaluations;
+        }
+
+        private long getAvoided() {
+            return this.avoided;
+        }
+
+    }
+
     public class BallSearch implements SearchAlgorithm<T> {
 
         private final T target;
 
         private final double eps;
 
-        private final List<T> points;
+        private final SearchResult<T> points;
+
+        private double[] bounds;
+
+        private double[] dists;
+
+        private final Evaluator evaluator;
 
         public BallSearch(T target, double eps) {
             this.target = target;
             this.eps = eps;
-            this.points = new LinkedList<>();
+            this.points = new SearchResult<>(16);
+            this.bounds = new double[0];
+            this.dists = new double[0];
+            this.evaluator = new Evaluator();
+        }
+
+        private double eval(T x, double bound) {
+            return this.evaluator.eval(this.target, x, bound);
+        }
+
+        public long getEvaluations() {
+            return this.evaluator.getEvaluations();
+        }
+
+        public long getAvoidedEvaluations() {
+            return this.evaluator.getAvoided();
         }
 
         @Override
-        public Collection<T> getPoints() {
+        public SearchResult<T> getPoints() {
             return this.points;
         }
 
@@ -52,8 +149,8 @@ public class VPTree<T> {
         public void search(SplitNode<T> node) {
             T center = node.getCenter();
             double radius = node.getRadius();
-            double dist = VPTree.this.metric.eval(this.target, center);
-            if (dist < radius + this.eps) {
+            double dist = eval(center, radius + this.eps);
+            if (dist <= radius + this.eps) {
                 node.getLeft().search(this);
             }
             if (dist >= radius - this.eps) {
@@ -63,9 +160,34 @@ public class VPTree<T> {
 
         @Override
         public void search(SplitLeaf<T> leaf) {
-            for (T x : leaf.getData()) {
-                if (VPTree.this.metric.eval(target, x) <= this.eps) {
-                    this.points.add(x);
+            QuantizedBlock<T> codes = leaf.getCodes();
+            MetricBlock<T> block = leaf.getBlock();
+            if (block != null) {
+                this.dists = this.evaluator.evalMany(this.target, block, this.eps, this.dists);
+                int i = 0;
+                for (T x : leaf.getData()) {
+                    double dist = this.dists[i++];
+                    if (dist <= this.eps) {
+                        this.points.append(x, dist);
+                    }
+                }
+            } else if (codes == null) {
+                for (T x : leaf.getData()) {
+                    double dist = eval(x, this.eps);
+                    if (dist <= this.eps) {
+                        this.points.append(x, dist);
+                    }
+                }
+            } else {
+                this.bounds = lowerBounds(codes, this.target, this.bounds);
+                int i = 0;
+                for (T x : leaf.getData()) {
+                    if (!prunes(this.bounds[i++], this.eps)) {
+                        double dist = eval(x, this.eps);
+                        if (dist <= this.eps) {
+                            this.points.append(x, dist);
+                        }
+                    }
                 }
             }
         }
@@ -80,19 +202,62 @@ public class VPTree<T> {
 
         private final MaxHeap<Ordered<Double, T>> points;
 
+        private final double maxRadius;
+
+        private final boolean expand;
+
+        private double[] bounds;
+
+        private double[] dists;
+
+        private final Evaluator evaluator;
+
+        private long weight;
+
         public KNNSearch(T center, int neighbors) {
+            this(center, neighbors, true);
+        }
+
+        public KNNSearch(T center, int neighbors, boolean expand) {
+            this(center, neighbors, Double.POSITIVE_INFINITY, expand);
+        }
+
+        public KNNSearch(T center, int neighbors, double maxRadius, boolean expand) {
             this.center = center;
             this.neighbors = neighbors;
+            this.maxRadius = maxRadius;
+            this.expand = expand;
             this.points = new MaxHeap<>(neighbors);
+            this.bounds = new double[0];
+            this.dists = new double[0];
+            this.evaluator = new Evaluator();
+            this.weight = 0;
+        }
+
+        private double eval(T x, double bound) {
+            return this.evaluator.eval(this.center, x, bound);
+        }
+
+        public long getEvaluations() {
+            return this.evaluator.getEvaluations();
+        }
+
+        public long getAvoidedEvaluations() {
+            return this.evaluator.getAvoided();
         }
 
         public void add(T data) {
-            double dist = VPTree.this.metric.eval(this.center, data);
-            double radius = this.getRadius();
-            if (dist <= radius) {
+            add(data, eval(data, this.getRadius()));
+        }
+
+        private void add(T data, double dist) {
+            if (dist <= this.getRadius()) {
                 this.points.add(new Ordered<>(dist, data));
-                while (this.points.size() > neighbors) {
-                    this.points.extractMax();
+                this.weight += getMultiplicity(data);
+                while (!this.points.isEmpty()
+                        && this.weight - getMultiplicity(this.points.getMax().orElseThrow().getData()) >= neighbors) {
+                    this.points.extractMax()
+                            .ifPresent(b -> this.weight -= getMultiplicity(b.getData()));
                 }
             }
         }
@@ -102,37 +267,63 @@ public class VPTree<T> {
         }
 
         public double getRadius() {
-            if (this.points.size() < this.neighbors) {
-                return Double.POSITIVE_INFINITY;
+            if (this.weight < this.neighbors) {
+                return this.maxRadius;
             } else {
-                return this.points.getMax()
+                return Math.min(this.maxRadius, this.points.getMax()
                         .orElseThrow()
-                        .getOrder();
+                        .getOrder());
             }
         }
 
         @Override
-        public Collection<T> getPoints() {
-            Set<T> collected = new HashSet<>();
-            while (!this.points.isEmpty()) {
-                this.points.extractMax()
-                        .map(b -> b.getData())
-                        .ifPresent(collected::add);
+        public SearchResult<T> getPoints() {
+            int size = this.points.size();
+            Object[] sorted = new Object[size];
+            double[] dists = new double[size];
+            for (int i = size - 1; i >= 0; i--) {
+                Ordered<Double, T> furthest = this.points.extractMax().orElseThrow();
+                sorted[i] = furthest.getData();
+                dists[i] = furthest.getOrder();
+            }
+            this.weight = 0;
+            SearchResult<T> collected = new SearchResult<>(sorted, dists, size);
+            if (this.expand && !duplicates.isEmpty()) {
+                return expand(collected, this.neighbors);
+            } else {
+                return collected;
             }
-            return collected;
         }
 
         @Override
         public void search(SplitLeaf<T> leaf) {
-            this.addAll(leaf.getData());
+            QuantizedBlock<T> codes = leaf.getCodes();
+            MetricBlock<T> block = leaf.getBlock();
+            if (block != null) {
+                this.dists = this.evaluator.evalMany(this.center, block, this.getRadius(), this.dists);
+                int i = 0;
+                for (T x : leaf.getData()) {
+                    this.add(x, this.dists[i++]);
+                }
+            } else if (codes == null) {
+                this.addAll(leaf.getData());
+            } else {
+                this.bounds = lowerBounds(codes, this.center, this.bounds);
+                int i = 0;
+                for (T x : leaf.getData()) {
+                    if (!prunes(this.bounds[i++], this.getRadius())) {
+                        this.add(x);
+                    }
+                }
+            }
         }
 
         @Override
         public void search(SplitNode<T> node) {
             double radius = node.getRadius();
-            double dist = VPTree.this.metric.eval(this.center, node.getCenter());
             double eps = this.getRadius();
-            if (dist < radius + eps) {
+            double dist = eval(node.getCenter(), radius + eps);
+            if (dist <= radius + eps) {
                 node.getLeft().search(this);
                 eps = this.getRadius();
             }
@@ -143,6 +334,491 @@ public class VPTree<T> {
 
     }
 
+    public class BatchBallSearch implements SearchAlgorithm<T> {
+
+        private final List<T> targets;
+
+        private final double eps;
+
+        private final List<SearchResult<T>> results;
+
+        private int[] active;
+
+        private double[] bounds;
+
+        private double[] dists;
+
+        private final Evaluator evaluator;
+
+        public BatchBallSearch(List<T> targets, double eps) {
+            this.targets = targets;
+            this.eps = eps;
+            this.results = new ArrayList<>(targets.size());
+            this.active = new int[targets.size()];
+            for (int i = 0; i < targets.size(); i++) {
+                this.results.add(new SearchResult<>(16));
+                this.active[i] = i;
+            }
+            this.bounds = new double[0];
+            this.dists = new double[0];
+            this.evaluator = new Evaluator();
+        }
+
+        private double eval(int query, T x, double bound) {
+            return this.evaluator.eval(this.targets.get(query), x, bound);
+        }
+
+        public long getEvaluations() {
+            return this.evaluator.getEvaluations();
+        }
+
+        public long getAvoidedEvaluations() {
+            return this.evaluator.getAvoided();
+        }
+
+        public List<SearchResult<T>> getResults() {
+            return this.results;
+        }
+
+        @Override
+        public Collection<T> getPoints() {
+            List<T> points = new ArrayList<>();
+            this.results.forEach(points::addAll);
+            return points;
+        }
+
+        @Override
+        public void search(SplitNode<T> node) {
+            int[] queries = this.active;
+            int[] left = new int[queries.length];
+            int[] right = new int[queries.length];
+            int leftSize = 0;
+            int rightSize = 0;
+            double radius = node.getRadius();
+            for (int query : queries) {
+                double dist = eval(query, node.getCenter(), radius + this.eps);
+                if (dist <= radius + this.eps) {
+                    left[leftSize++] = query;
+                }
+                if (dist >= radius - this.eps) {
+                    right[rightSize++] = query;
+                }
+            }
+            if (leftSize > 0) {
+                this.active = Arrays.copyOf(left, leftSize);
+                node.getLeft().search(this);
+            }
+            if (rightSize > 0) {
+                this.active = Arrays.copyOf(right, rightSize);
+                node.getRight().search(this);
+            }
+            this.active = queries;
+        }
+
+        @Override
+        public void search(SplitLeaf<T> leaf) {
+            QuantizedBlock<T> codes = leaf.getCodes();
+            MetricBlock<T> block = leaf.getBlock();
+            if (block != null) {
+                for (int query : this.active) {
+                    this.dists = this.evaluator.evalMany(this.targets.get(query), block, this.eps, this.dists);
+                    int i = 0;
+                    for (T x : leaf.getData()) {
+                        double dist = this.dists[i++];
+                        if (dist <= this.eps) {
+                            this.results.get(query).append(x, dist);
+                        }
+                    }
+                }
+            } else if (codes == null) {
+                for (T x : leaf.getData()) {
+                    for (int query : this.active) {
+                        double dist = eval(query, x, this.eps);
+                        if (dist <= this.eps) {
+                            this.results.get(query).append(x, dist);
+                        }
+                    }
+                }
+            } else {
+                for (int query : this.active) {
+                    this.bounds = lowerBounds(codes, this.targets.get(query), this.bounds);
+                    int i = 0;
+                    for (T x : leaf.getData()) {
+                        if (!prunes(this.bounds[i++], this.eps)) {
+                            double dist = eval(query, x, this.eps);
+                            if (dist <= this.eps) {
+                                this.results.get(query).append(x, dist);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+    public class BatchKNNSearch implements SearchAlgorithm<T> {
+
+        private final List<KNNSearch> searches;
+
+        private int[] active;
+
+        public BatchKNNSearch(List<T> targets, int neighbors) {
+            this(targets, neighbors, Double.POSITIVE_INFINITY, true);
+        }
+
+        public BatchKNNSearch(List<T> targets, int neighbors, double maxRadius, boolean expand) {
+            this.searches = new ArrayList<>(targets.size());
+            this.active = new int[targets.size()];
+            for (int i = 0; i < targets.size(); i++) {
+                this.searches.add(new KNNSearch(targets.get(i), neighbors, maxRadius, expand));
+                this.active[i] = i;
+            }
+        }
+
+        public long getEvaluations() {
+            return this.searches.stream().mapToLong(KNNSearch::getEvaluations).sum();
+        }
+
+        public long getAvoidedEvaluations() {
+            return this.searches.stream().mapToLong(KNNSearch::getAvoidedEvaluations).sum();
+        }
+
+        public List<SearchResult<T>> getResults() {
+            List<SearchResult<T>> results = new ArrayList<>(this.searches.size());
+            for (KNNSearch search : this.searches) {
+                results.add(search.getPoints());
+            }
+            return results;
+        }
+
+        @Override
+        public Collection<T> getPoints() {
+            List<T> points = new ArrayList<>();
+            getResults().forEach(points::addAll);
+            return points;
+        }
+
+        @Override
+        public void search(SplitNode<T> node) {
+            int[] queries = this.active;
+            int[] left = new int[queries.length];
+            int[] right = new int[queries.length];
+            double[] dists = new double[queries.length];
+            int leftSize = 0;
+            int rightSize = 0;
+            double radius = node.getRadius();
+            for (int i = 0; i < queries.length; i++) {
+                KNNSearch search = this.searches.get(queries[i]);
+                double eps = search.getRadius();
+                dists[i] = search.eval(node.getCenter(), radius + eps);
+                if (dists[i] <= radius + eps) {
+                    left[leftSize++] = queries[i];
+                }
+            }
+            if (leftSize > 0) {
+                this.active = Arrays.copyOf(left, leftSize);
+                node.getLeft().search(this);
+            }
+            for (int i = 0; i < queries.length; i++) {
+                if (dists[i] >= radius - this.searches.get(queries[i]).getRadius()) {
+                    right[rightSize++] = queries[i];
+                }
+            }
+            if (rightSize > 0) {
+                this.active = Arrays.copyOf(right, rightSize);
+                node.getRight().search(this);
+            }
+            this.active = queries;
+        }
+
+        @Override
+        public void search(SplitLeaf<T> leaf) {
+            for (int query : this.active) {
+                this.searches.get(query).search(leaf);
+            }
+        }
+
+    }
+
+    private class RouteSearch implements SearchAlgorithm<T> {
+
+        private final T target;
+
+        private final Evaluator evaluator = new Evaluator();
+
+        private long key = 0;
+
+        private int depth = 0;
+
+        private RouteSearch(T target) {
+            this.target = target;
+        }
+
+        private long getKey() {
+            return this.key;
+        }
+
+        @Override
+        public Collection<T> getPoints() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void search(SplitNode<T> node) {
+            if (this.depth < LOCALITY_DEPTH) {
+                double radius = node.getRadius();
+                boolean right = this.evaluator.eval(this.target, node.getCenter(), radius) > radius;
+                this.depth++;
+                if (right) {
+                    this.key |= 1L << (LOCALITY_DEPTH - this.depth);
+                    node.getRight().search(this);
+                } else {
+                    node.getLeft().search(this);
+                }
+            }
+        }
+
+        @Override
+        public void search(SplitLeaf<T> leaf) {
+        }
+
+    }
+
+    private class FootprintSearch implements SearchAlgorithm<T> {
+
+        private long bytes = 0;
+
+        private long entries = 0;
+
+        private long getBytes() {
+            return this.bytes;
+        }
+
+        private long getEntries() {
+            return this.entries;
+        }
+
+        @Override
+        public Collection<T> getPoints() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void search(SplitNode<T> node) {
+            this.bytes += Footprint.object(3 * Footprint.REFERENCE + Double.BYTES);
+            node.getLeft().search(this);
+            node.getRight().search(this);
+        }
+
+        @Override
+        public void search(SplitLeaf<T> leaf) {
+            this.bytes += Footprint.object(3 * Footprint.REFERENCE);
+            this.bytes += Footprint.object(3 * Integer.BYTES + Footprint.REFERENCE);
+            this.entries += leaf.getData().size();
+            if (leaf.getCodes() != null) {
+                this.bytes += leaf.getCodes().memoryFootprint();
+            }
+            if (leaf.getBlock() != null) {
+                this.bytes += leaf.getBlock().memoryFootprint();
+            }
+        }
+
+    }
+
+    private class CenterSearch implements SearchAlgorithm<T> {
+
+        private final List<T> centers = new ArrayList<>();
+
+        @Override
+        public Collection<T> getPoints() {
+            return this.centers;
+        }
+
+        @Override
+        public void search(SplitNode<T> node) {
+            if (node.getRadius() < VPTree.this.leafRadius) {
+                this.centers.add(node.getCenter());
+            } else {
+                node.getLeft().search(this);
+            }
+            node.getRight().search(this);
+        }
+
+        @Override
+        public void search(SplitLeaf<T> leaf) {
+            this.centers.addAll(leaf.getData());
+        }
+
+    }
+
+    private class CoverSearch implements SearchAlgorithm<T> {
+
+        private final double eps;
+
+        private final int depth;
+
+        private final List<T> centers = new ArrayList<>();
+
+        private final Evaluator evaluator = new Evaluator();
+
+        private CoverSearch(double eps, int depth) {
+            this.eps = eps;
+            this.depth = depth;
+        }
+
+        @Override
+        public List<T> getPoints() {
+            return this.centers;
+        }
+
+        @Override
+        public void search(SplitNode<T> node) {
+            boolean covered = node.getRadius() <= this.eps;
+            if (covered) {
+                this.centers.add(node.getCenter());
+            }
+            if (this.depth < PARALLEL_DEPTH) {
+                CoverSearch left = new CoverSearch(this.eps, this.depth + 1);
+                CoverSearch right = new CoverSearch(this.eps, this.depth + 1);
+                if (covered) {
+                    node.getRight().search(right);
+                } else {
+                    ForkJoinTask.invokeAll(
+                            ForkJoinTask.adapt(() -> node.getLeft().search(left)),
+                            ForkJoinTask.adapt(() -> node.getRight().search(right)));
+                }
+                this.centers.addAll(left.getPoints());
+                this.centers.addAll(right.getPoints());
+            } else {
+                if (!covered) {
+                    node.getLeft().search(this);
+                }
+                node.getRight().search(this);
+            }
+        }
+
+        @Override
+        public void search(SplitLeaf<T> leaf) {
+            int first = this.centers.size();
+            for (T x : leaf.getData()) {
+                boolean covered = false;
+                for (int i = first; i < this.centers.size() && !covered; i++) {
+                    covered = this.evaluator.eval(this.centers.get(i), x, this.eps) <= this.eps;
+                }
+                if (!covered) {
+                    this.centers.add(x);
+                }
+            }
+        }
+
+    }
+
+    private class StatsSearch implements SearchAlgorithm<T> {
+
+        private final TreeStats stats = new TreeStats();
+
+        private final boolean parallel;
+
+        private int depth;
+
+        private StatsSearch(int depth, boolean parallel) {
+            this.depth = depth;
+            this.parallel = parallel;
+        }
+
+        private TreeStats getStats() {
+            return this.stats;
+        }
+
+        @Override
+        public Collection<T> getPoints() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void search(SplitNode<T> node) {
+            this.stats.addNode(this.depth, node.getRadius(), node.getRadius() < VPTree.this.leafRadius);
+            if (this.parallel && this.depth < PARALLEL_DEPTH) {
+                StatsSearch left = new StatsSearch(this.depth + 1, true);
+                StatsSearch right = new StatsSearch(this.depth + 1, true);
+                ForkJoinTask.invokeAll(
+                        ForkJoinTask.adapt(() -> node.getLeft().search(left)),
+                        ForkJoinTask.adapt(() -> node.getRight().search(right)));
+                this.stats.merge(left.getStats()).merge(right.getStats());
+            } else {
+                this.depth++;
+                node.getLeft().search(this);
+                node.getRight().search(this);
+                this.depth--;
+            }
+        }
+
+        @Override
+        public void search(SplitLeaf<T> leaf) {
+            this.stats.addLeaf(this.depth, leaf.getData().size());
+        }
+
+    }
+
+    private class ProfileSearch implements SearchAlgorithm<T> {
+
+        private final TreeStats stats = new TreeStats();
+
+        private final BallSearch ballSearch;
+
+        private final T target;
+
+        private final double eps;
+
+        private final Evaluator evaluator;
+
+        private int depth;
+
+        private ProfileSearch(T target, double eps) {
+            this.ballSearch = new BallSearch(target, eps);
+            this.target = target;
+            this.eps = eps;
+            this.evaluator = new Evaluator();
+            this.depth = 0;
+        }
+
+        private TreeStats getStats() {
+            this.stats.addQuery(this.evaluator.getEvaluations() + this.ballSearch.getEvaluations(),
+                    this.evaluator.getAvoided() + this.ballSearch.getAvoidedEvaluations());
+            return this.stats;
+        }
+
+        @Override
+        public Collection<T> getPoints() {
+            return this.ballSearch.getPoints();
+        }
+
+        @Override
+        public void search(SplitNode<T> node) {
+            double radius = node.getRadius();
+            double dist = this.evaluator.eval(this.target, node.getCenter(), radius + this.eps);
+            boolean left = dist <= radius + this.eps;
+            boolean right = dist >= radius - this.eps;
+            this.stats.addVisit(this.depth, left && right);
+            this.depth++;
+            if (left) {
+                node.getLeft().search(this);
+            }
+            if (right) {
+                node.getRight().search(this);
+            }
+            this.depth--;
+        }
+
+        @Override
+        public void search(SplitLeaf<T> leaf) {
+            this.stats.addLeafVisit();
+            this.ballSearch.search(leaf);
+        }
+
+    }
+
     public static class Builder<T> {
 
         private int leafCapacity = 1;
@@ -153,6 +829,16 @@ public class VPTree<T> {
 
         private Metric<T> metric;
 
+        private Quantizer<T> quantizer;
+
+        private boolean compaction = false;
+
+        private Function<? super T, ?> duplicateKey;
+
+        private Metric<T> lowerBound;
+
+        private boolean batchEvaluation = false;
+
         public Builder<T> withLeafCapacity(int leafCapacity) {
             this.leafCapacity = leafCapacity;
             return this;
@@ -173,29 +859,153 @@ public class VPTree<T> {
             return this;
         }
 
-        public VPTree<T> build(Collection<T> data) {
+        public Builder<T> withQuantizer(Quantizer<T> quantizer) {
+            this.quantizer = quantizer;
+            return this;
+        }
+
+        public Builder<T> withLowerBound(Metric<T> lowerBound) {
+            this.lowerBound = lowerBound;
+            return this;
+        }
+
+        public Builder<T> withBatchEvaluation(boolean batchEvaluation) {
+            this.batchEvaluation = batchEvaluation;
+            return this;
+        }
+
+        public Builder<T> withDuplicateCompaction(boolean compaction) {
+            this.compaction = compaction;
+            return this;
+        }
+
+        public Builder<T> withDuplicateKey(Function<? super T, ?> duplicateKey) {
+            this.duplicateKey = duplicateKey;
+            return this;
+        }
+
+        Builder<T> copy() {
+            Builder<T> copy = new Builder<>();
+            copy.leafCapacity = this.leafCapacity;
+            copy.leafRadius = this.leafRadius;
+            copy.randomPivoting = this.randomPivoting;
+            copy.metric = this.metric;
+            copy.quantizer = this.quantizer;
+            copy.compaction = this.compaction;
+            copy.duplicateKey = this.duplicateKey;
+            copy.lowerBound = this.lowerBound;
+            copy.batchEvaluation = this.batchEvaluation;
+            return copy;
+        }
+
+        private Builder<T> withCandidate(TuningReport.Candidate candidate) {
+            this.leafCapacity = candidate.getLeafCapacity();
+            this.leafRadius = candidate.getLeafRadius();
+            this.randomPivoting = candidate.isRandomPivoting();
+            return this;
+        }
+
+        private void validate() {
             if (this.metric == null) {
                 throw new IllegalArgumentException("A metric must be specified");
             }
-            return new VPTree<>(this.metric, this.leafCapacity, this.leafRadius, this.randomPivoting, data);
+            if (this.quantizer != null && !this.quantizer.isCompatible(this.metric)) {
+                throw new IllegalArgumentException("The quantizer does not support the given metric");
+            }
+            if (this.batchEvaluation && !(this.metric instanceof BatchMetric)) {
+                throw new IllegalArgumentException("Batch evaluation requires a BatchMetric");
+            }
+            if (this.batchEvaluation && (this.quantizer != null || this.lowerBound != null)) {
+                throw new IllegalArgumentException("Batch evaluation excludes quantizers and lower bounds");
+            }
+        }
+
+        private Tuner<T> tuner(Collection<T> sample, Collection<T> queries) {
+            validate();
+            return new Tuner<>(copy(), sample, queries);
+        }
+
+        public TuningReport tuneBallSearch(Collection<T> sample, Collection<T> queries, double eps) {
+            TuningReport report = tuner(sample, queries)
+                    .tune(eps, (vpTree, query) -> vpTree.ballSearchEvaluations(query, eps));
+            withCandidate(report.getBest());
+            return report;
+        }
+
+        public TuningReport tuneKNNSearch(Collection<T> sample, Collection<T> queries, int neighbors) {
+            Tuner<T> tuner = tuner(sample, queries);
+            TuningReport report = tuner.tune(tuner.knnRadius(neighbors),
+                    (vpTree, query) -> vpTree.knnSearchEvaluations(query, neighbors));
+            withCandidate(report.getBest());
+            return report;
+        }
+
+        public VPTree<T> build(Collection<T> data) {
+            validate();
+            return new VPTree<>(this, data);
         }
 
     }
 
-    private VPTree(Metric<T> metric, int capacity, double radius, boolean randomPivot, Collection<T> data) {
-        this.metric = metric;
+    private VPTree(Builder<T> builder, Collection<T> data) {
+        this.metric = builder.metric;
+        if (this.metric instanceof BoundedMetric) {
+            this.boundedMetric = (BoundedMetric<T>) this.metric;
+        } else {
+            this.boundedMetric = null;
+        }
+        if (builder.batchEvaluation) {
+            this.batchMetric = (BatchMetric<T>) this.metric;
+        } else {
+            this.batchMetric = null;
+        }
+        this.lowerBound = builder.lowerBound;
+        this.quantizer = builder.quantizer;
+        this.compaction = builder.compaction;
+        this.duplicates = new IdentityHashMap<>();
         this.dataset = new ArrayList<>(data.size());
-        for (T x : data) {
-            this.dataset.add(new Ordered<>(0.0, x));
+        if (builder.duplicateKey == null && builder.compaction) {
+            Map<T, Boolean> seen = new IdentityHashMap<>();
+            for (T x : data) {
+                if (seen.put(x, Boolean.TRUE) == null) {
+                    this.dataset.add(new Ordered<>(0.0, x));
+                } else {
+                    merge(x, x);
+                }
+            }
+        } else if (builder.duplicateKey == null) {
+            for (T x : data) {
+                this.dataset.add(new Ordered<>(0.0, x));
+            }
+        } else {
+            Map<Object, T> representatives = new HashMap<>();
+            for (T x : data) {
+                T representative = representatives.putIfAbsent(builder.duplicateKey.apply(x), x);
+                if (representative == null) {
+                    this.dataset.add(new Ordered<>(0.0, x));
+                } else {
+                    merge(representative, x);
+                }
+            }
         }
-        this.leafRadius = radius;
-        this.leafCapacity = capacity;
-        this.centers = new ArrayList<>(data.size());
-        if (randomPivot) {
+        this.leafRadius = builder.leafRadius;
+        this.leafCapacity = builder.leafCapacity;
+        this.leafData = new Object[this.dataset.size()];
+        this.leafSize = 0;
+        this.leafRanges = new ArrayList<>();
+        if (builder.randomPivoting) {
             this.tree = build(0, this.dataset.size());
         } else {
             this.tree = buildUpdate(0, this.dataset.size());
         }
+        if (this.leafSize < this.leafData.length) {
+            this.leafData = Arrays.copyOf(this.leafData, this.leafSize);
+            for (LeafRange<T> range : this.leafRanges) {
+                range.setData(this.leafData);
+            }
+        }
+        this.leafRanges = null;
+        this.dataset = null;
     }
 
     private void swap(int i, int j) {
@@ -209,34 +1019,114 @@ public class VPTree<T> {
         }
     }
 
+    private void merge(T representative, T duplicate) {
+        List<T> copies = this.duplicates.computeIfAbsent(representative, x -> new ArrayList<>());
+        copies.add(duplicate);
+        if (duplicate != representative) {
+            List<T> nested = this.duplicates.remove(duplicate);
+            if (nested != null) {
+                copies.addAll(nested);
+            }
+        }
+    }
+
+    private int compact(T center, int start, int end) {
+        int last = end;
+        int j = start;
+        while (j < last) {
+            Ordered<Double, T> wo = this.dataset.get(j);
+            if (wo.getOrder() == 0.0) {
+                last--;
+                swap(j, last);
+                merge(center, wo.getData());
+            } else {
+                j++;
+            }
+        }
+        return last;
+    }
+
+    @SuppressWarnings("unchecked")
     private SplitTree<T> buildLeaf(int start, int end) {
-        List<T> points = new ArrayList<>(end - start);
+        int first = this.leafSize;
+        int run = first;
+        if (this.compaction) {
+            Collections.sort(this.dataset.subList(start, end));
+        }
         for (int i = start; i < end; i++) {
-            points.add(this.dataset.get(i).getData());
+            T x = this.dataset.get(i).getData();
+            T representative = null;
+            if (this.compaction) {
+                if (i > start && !this.dataset.get(i).getOrder().equals(this.dataset.get(i - 1).getOrder())) {
+                    run = this.leafSize;
+                }
+                for (int j = run; j < this.leafSize && representative == null; j++) {
+                    T point = (T) this.leafData[j];
+                    if (this.metric.eval(point, x) == 0.0) {
+                        representative = point;
+                    }
+                }
+            }
+            if (representative == null) {
+                this.leafData[this.leafSize++] = x;
+            } else {
+                merge(representative, x);
+            }
+        }
+        LeafRange<T> points = new LeafRange<>(this.leafData, first, this.leafSize);
+        this.leafRanges.add(points);
+        if (this.batchMetric != null) {
+            return new SplitLeaf<>(points, null, this.batchMetric.block(points));
+        } else if (this.quantizer == null) {
+            return new SplitLeaf<>(points);
+        } else {
+            return new SplitLeaf<>(points, this.quantizer.encode(points));
+        }
+    }
+
+    private double distance(T x, T y, double bound) {
+        if (this.boundedMetric == null) {
+            return this.metric.eval(x, y);
+        } else {
+            return this.boundedMetric.eval(x, y, bound);
+        }
+    }
+
+    private static boolean prunes(double bound, double radius) {
+        return Double.isFinite(bound) && bound > radius;
+    }
+
+    private double[] lowerBounds(QuantizedBlock<T> codes, T target, double[] buffer) {
+        double[] bounds = buffer;
+        if (bounds.length < codes.size()) {
+            bounds = new double[codes.size()];
         }
-        return new SplitLeaf<>(points);
+        codes.lowerBounds(target, bounds);
+        return bounds;
     }
 
     private SplitTree<T> build(int start, int end) {
         if (end - start <= this.leafCapacity) {
-            for (int i = start; i < end; i++) {
-                this.centers.add(this.dataset.get(i).getData());
-            }
             return buildLeaf(start, end);
         } else {
-            int mid = (start + end) / 2;
             int pivot = start + rand.nextInt(end - start);
             swap(pivot, start);
             Ordered<Double, T> pivotPoint = this.dataset.get(start);
             T vantagePoint = pivotPoint.getData();
             updateDist(vantagePoint, start + 1, end);
+            if (this.compaction) {
+                end = compact(vantagePoint, start + 1, end);
+                if (end - start <= this.leafCapacity) {
+                    return buildLeaf(start, end);
+                }
+            }
+            int mid = (start + end) / 2;
             Pivoter.quickSelect(this.dataset, start + 1, end, mid);
             Ordered<Double, T> furthestPoint = this.dataset.get(mid);
             double radius = furthestPoint.getOrder();
             SplitTree<T> leftTree;
             SplitTree<T> rightTree;
             if (radius < this.leafRadius) {
-                this.centers.add(vantagePoint);
                 leftTree = buildLeaf(start, mid);
             } else {
                 leftTree = build(start, mid);
@@ -248,21 +1138,23 @@ public class VPTree<T> {
 
     private SplitTree<T> buildUpdate(int start, int end) {
         if (end - start <= this.leafCapacity) {
-            for (int i = start; i < end; i++) {
-                this.centers.add(this.dataset.get(i).getData());
-            }
             return buildLeaf(start, end);
         } else {
-            int mid = (start + end) / 2;
             Ordered<Double, T> center = this.dataset.get(start);
             updateDist(center.getData(), start + 1, end);
+            if (this.compaction) {
+                end = compact(center.getData(), start + 1, end);
+                if (end - start <= this.leafCapacity) {
+                    return buildLeaf(start, end);
+                }
+            }
+            int mid = (start + end) / 2;
             Pivoter.quickSelect(this.dataset, start + 1, end, mid);
             Ordered<Double, T> furthest = this.dataset.get(mid);
             double radius = furthest.getOrder();
             SplitTree<T> leftTree;
             SplitTree<T> rightTree;
             if (radius < this.leafRadius) {
-                this.centers.add(center.getData());
                 leftTree = buildLeaf(start, mid);
             } else {
                 leftTree = buildNoUpdate(start, mid);
@@ -274,9 +1166,6 @@ public class VPTree<T> {
 
     private SplitTree<T> buildNoUpdate(int start, int end) {
         if (end - start <= this.leafCapacity) {
-            for (int i = start; i < end; i++) {
-                this.centers.add(this.dataset.get(i).getData());
-            }
             return buildLeaf(start, end);
         } else {
             int mid = (start + end) / 2;
@@ -287,7 +1176,6 @@ public class VPTree<T> {
             SplitTree<T> leftTree;
             SplitTree<T> rightTree;
             if (radius < this.leafRadius) {
-                this.centers.add(center.getData());
                 leftTree = buildLeaf(start, mid);
             } else {
                 leftTree = buildNoUpdate(start, mid);
@@ -304,20 +1192,271 @@ public class VPTree<T> {
         }
     }
 
+    public long getEvaluations() {
+        return this.evaluations.sum();
+    }
+
+    public long getAvoidedEvaluations() {
+        return this.avoidedEvaluations.sum();
+    }
+
+    /**
+     * Number of input points represented by a tree entry. Entries are matched
+     * by reference, so any object which is not itself a tree entry, even if
+     * equal to one, has multiplicity 1.
+     */
+    public int getMultiplicity(T point) {
+        List<T> copies = this.duplicates.get(point);
+        return copies == null ? 1 : 1 + copies.size();
+    }
+
+    private Collection<T> expand(T point) {
+        List<T> copies = this.duplicates.get(point);
+        if (copies == null) {
+            return Collections.singletonList(point);
+        } else {
+            List<T> expanded = new ArrayList<>(copies.size() + 1);
+            expanded.add(point);
+            expanded.addAll(copies);
+            return expanded;
+        }
+    }
+
+    private SearchResult<T> expand(SearchResult<T> points, int limit) {
+        SearchResult<T> expanded = new SearchResult<>(Math.min(limit, points.size()));
+        for (int i = 0; i < points.size(); i++) {
+            for (T copy : expand(points.get(i))) {
+                if (expanded.size() < limit) {
+                    expanded.append(copy, points.getDistance(i));
+                }
+            }
+        }
+        return expanded;
+    }
+
+    private Collection<T> expand(Collection<T> points) {
+        if (this.duplicates.isEmpty()) {
+            return points;
+        } else {
+            List<T> expanded = new ArrayList<>(points.size());
+            for (T x : points) {
+                expanded.addAll(expand(x));
+            }
+            return expanded;
+        }
+    }
+
+    /**
+     * Estimated heap bytes held by the index itself: nodes, leaves, the shared
+     * leaf array, quantized codes, metric blocks and the duplicates map. The
+     * points are not counted, since they are owned by the caller and their
+     * size depends on T; use {@link #memoryFootprint(long)} to include them.
+     */
+    public long memoryFootprint() {
+        return memoryFootprint(0L);
+    }
+
+    /**
+     * Same as {@link #memoryFootprint()}, plus bytesPerPoint for every input
+     * point, including the duplicates merged into a tree entry. Repeated
+     * references to the same object are charged once per occurrence, so the
+     * result is an upper bound when the input contains any.
+     */
+    public long memoryFootprint(long bytesPerPoint) {
+        FootprintSearch footprintSearch = new FootprintSearch();
+        this.tree.search(footprintSearch);
+        long bytes = footprintSearch.getBytes() + Footprint.array(this.leafData.length, Footprint.REFERENCE);
+        long points = footprintSearch.getEntries();
+        if (!this.duplicates.isEmpty()) {
+            bytes += Footprint.array(4L * this.duplicates.size(), Footprint.REFERENCE);
+            for (List<T> copies : this.duplicates.values()) {
+                bytes += Footprint.object(2 * Integer.BYTES + Footprint.REFERENCE);
+                bytes += Footprint.array(copies.size(), Footprint.REFERENCE);
+                points += copies.size();
+            }
+        }
+        return bytes + points * bytesPerPoint;
+    }
+
     public Collection<T> getCenters() {
-        return centers;
+        CenterSearch centerSearch = new CenterSearch();
+        this.tree.search(centerSearch);
+        return centerSearch.getPoints();
+    }
+
+    public TreeStats stats() {
+        return stats(Collections.emptyList(), 0.0, false);
+    }
+
+    public TreeStats stats(Collection<T> queries, double eps) {
+        return stats(queries, eps, false);
+    }
+
+    public TreeStats stats(Collection<T> queries, double eps, boolean parallel) {
+        StatsSearch statsSearch = new StatsSearch(0, parallel);
+        this.tree.search(statsSearch);
+        Stream<T> stream = parallel ? queries.parallelStream() : queries.stream();
+        TreeStats profile = stream
+                .map(query -> {
+                    ProfileSearch profileSearch = new ProfileSearch(query, eps);
+                    this.tree.search(profileSearch);
+                    return profileSearch.getStats();
+                })
+                .reduce(TreeStats::merge)
+                .orElseGet(TreeStats::new);
+        return statsSearch.getStats().merge(profile);
+    }
+
+    public Map<T, Collection<T>> ballCover(double eps) {
+        CoverSearch coverSearch = new CoverSearch(eps, 0);
+        this.tree.search(coverSearch);
+        List<T> centers = coverSearch.getPoints();
+        List<SearchResult<T>> results = batch(centers, false, chunk -> {
+            BatchBallSearch batchSearch = new BatchBallSearch(chunk, eps);
+            this.tree.search(batchSearch);
+            return batchSearch.getResults();
+        });
+        Map<T, Collection<T>> cover = new IdentityHashMap<>();
+        for (int i = 0; i < centers.size(); i++) {
+            cover.put(centers.get(i), expand(results.get(i)));
+        }
+        return cover;
+    }
+
+    private long[] localityKeys(List<T> targets) {
+        long[] keys = new long[targets.size()];
+        for (int i = 0; i < keys.length; i++) {
+            RouteSearch routeSearch = new RouteSearch(targets.get(i));
+            this.tree.search(routeSearch);
+            this.evaluations.add(routeSearch.evaluator.getEvaluations());
+            this.avoidedEvaluations.add(routeSearch.evaluator.getAvoided());
+            keys[i] = routeSearch.getKey();
+        }
+        return keys;
+    }
+
+    private List<SearchResult<T>> batch(List<T> targets, boolean sort,
+            Function<List<T>, List<SearchResult<T>>> search) {
+        Integer[] order = new Integer[targets.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        if (sort) {
+            long[] keys = localityKeys(targets);
+            Arrays.sort(order, (i, j) -> Long.compare(keys[i], keys[j]));
+        }
+        List<T> sorted = new ArrayList<>(order.length);
+        for (int i : order) {
+            sorted.add(targets.get(i));
+        }
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int chunkSize = Math.max(1, sorted.size() / (4 * parallelism));
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i += chunkSize) {
+            chunks.add(sorted.subList(i, Math.min(sorted.size(), i + chunkSize)));
+        }
+        List<SearchResult<T>> chunkResults = chunks.parallelStream()
+                .map(search)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        List<SearchResult<T>> results = new ArrayList<>(Collections.nCopies(order.length, null));
+        for (int i = 0; i < order.length; i++) {
+            results.set(order[i], chunkResults.get(i));
+        }
+        return results;
+    }
+
+    public List<SearchResult<T>> batchBallSearch(List<T> targets, double eps) {
+        return batch(targets, true, chunk -> {
+            BatchBallSearch batchSearch = new BatchBallSearch(chunk, eps);
+            this.tree.search(batchSearch);
+            this.evaluations.add(batchSearch.getEvaluations());
+            this.avoidedEvaluations.add(batchSearch.getAvoidedEvaluations());
+            List<SearchResult<T>> results = new ArrayList<>(chunk.size());
+            for (SearchResult<T> result : batchSearch.getResults()) {
+                results.add(this.duplicates.isEmpty() ? result : expand(result, Integer.MAX_VALUE));
+            }
+            return results;
+        });
+    }
+
+    public List<SearchResult<T>> batchKNNSearch(List<T> targets, int neighbors) {
+        return batchKNNSearch(targets, neighbors, Double.POSITIVE_INFINITY);
+    }
+
+    public List<SearchResult<T>> batchKNNSearch(List<T> targets, int neighbors, double maxRadius) {
+        return batch(targets, true, chunk -> {
+            BatchKNNSearch batchSearch = new BatchKNNSearch(chunk, neighbors, maxRadius, true);
+            this.tree.search(batchSearch);
+            this.evaluations.add(batchSearch.getEvaluations());
+            this.avoidedEvaluations.add(batchSearch.getAvoidedEvaluations());
+            return batchSearch.getResults();
+        });
     }
 
     public Collection<T> ballSearch(T target, double eps) {
+        return ballSearch(target, eps, true);
+    }
+
+    public Collection<T> ballSearch(T target, double eps, boolean expand) {
         BallSearch ballSearch = new BallSearch(target, eps);
         this.tree.search(ballSearch);
-        return ballSearch.getPoints();
+        this.evaluations.add(ballSearch.getEvaluations());
+        this.avoidedEvaluations.add(ballSearch.getAvoidedEvaluations());
+        if (expand) {
+            return expand(ballSearch.getPoints());
+        } else {
+            return ballSearch.getPoints();
+        }
     }
 
-    public Collection<T> knnSearch(T target, int neighbors) {
-        KNNSearch knnSearch = new KNNSearch(target, neighbors);
+    public SearchResult<T> ballSearchWithDistances(T target, double eps) {
+        return ballSearchWithDistances(target, eps, true);
+    }
+
+    public SearchResult<T> ballSearchWithDistances(T target, double eps, boolean expand) {
+        BallSearch ballSearch = new BallSearch(target, eps);
+        this.tree.search(ballSearch);
+        this.evaluations.add(ballSearch.getEvaluations());
+        this.avoidedEvaluations.add(ballSearch.getAvoidedEvaluations());
+        SearchResult<T> sorted = ballSearch.getPoints().sorted();
+        if (expand && !this.duplicates.isEmpty()) {
+            return expand(sorted, Integer.MAX_VALUE);
+        } else {
+            return sorted;
+        }
+    }
+
+    public SearchResult<T> knnSearch(T target, int neighbors) {
+        return knnSearch(target, neighbors, true);
+    }
+
+    public SearchResult<T> knnSearch(T target, int neighbors, boolean expand) {
+        return knnSearch(target, neighbors, Double.POSITIVE_INFINITY, expand);
+    }
+
+    public SearchResult<T> knnSearch(T target, int neighbors, double maxRadius) {
+        return knnSearch(target, neighbors, maxRadius, true);
+    }
+
+    public SearchResult<T> knnSearch(T target, int neighbors, double maxRadius, boolean expand) {
+        KNNSearch knnSearch = new KNNSearch(target, neighbors, maxRadius, expand);
         this.tree.search(knnSearch);
+        this.evaluations.add(knnSearch.getEvaluations());
+        this.avoidedEvaluations.add(knnSearch.getAvoidedEvaluations());
         return knnSearch.getPoints();
     }
 
+    long ballSearchEvaluations(T target, double eps) {
+        BallSearch ballSearch = new BallSearch(target, eps);
+        this.tree.search(ballSearch);
+        return ballSearch.getEvaluations();
+    }
+
+    long knnSearchEvaluations(T target, int neighbors) {
+        KNNSearch knnSearch = new KNNSearch(target, neighbors);
+        this.tree.search(knnSearch);
+        return knnSearch.getEvaluations();
+    }
+
 }
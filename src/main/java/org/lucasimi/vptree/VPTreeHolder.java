@@ -0,0 +1,110 @@
+package org.lucasimi.vptree;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Serves queries from the latest published {@link VPTree} while new versions
+ * are built in the background. Rebuilds run one at a time and at most one
+ * request waits behind the running one: a newer request supersedes (and
+ * cancels) the waiting one, so that at most two trees are alive at any time.
+ * Readers only perform a volatile read, and a replaced snapshot becomes
+ * unreachable as soon as the last reader holding it returns. After
+ * {@link #close()} the waiting request is cancelled and new requests are
+ * rejected with a {@link RejectedExecutionException}.
+ */
+public class VPTreeHolder<T> implements AutoCloseable {
+
+    public static class Snapshot<T> {
+
+        private final long version;
+
+        private final VPTree<T> tree;
+
+        private Snapshot(long version, VPTree<T> tree) {
+            this.version = version;
+            this.tree = tree;
+        }
+
+        public long getVersion() {
+            return this.version;
+        }
+
+        public VPTree<T> getTree() {
+            return this.tree;
+        }
+
+    }
+
+    private final VPTree.Builder<T> builder;
+
+    private final ExecutorService executor;
+
+    private volatile Snapshot<T> snapshot;
+
+    private long version;
+
+    public VPTreeHolder(VPTree.Builder<T> builder) {
+        this.builder = builder.copy();
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "vptree-rebuild");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    if (!pool.isShutdown()) {
+                        Runnable superseded = pool.getQueue().poll();
+                        if (superseded instanceof Future) {
+                            ((Future<?>) superseded).cancel(false);
+                        }
+                        pool.execute(runnable);
+                    } else {
+                        throw new RejectedExecutionException("The holder has been closed");
+                    }
+                });
+        this.snapshot = null;
+        this.version = 0;
+    }
+
+    public Future<Snapshot<T>> rebuild(Supplier<? extends Collection<T>> data) {
+        return this.executor.submit(() -> {
+            VPTree<T> tree = this.builder.build(data.get());
+            Snapshot<T> published = new Snapshot<>(++this.version, tree);
+            this.snapshot = published;
+            return published;
+        });
+    }
+
+    public Snapshot<T> getSnapshot() {
+        Snapshot<T> current = this.snapshot;
+        if (current == null) {
+            throw new IllegalStateException("No tree has been built yet");
+        }
+        return current;
+    }
+
+    public Collection<T> ballSearch(T target, double eps) {
+        return getSnapshot().getTree().ballSearch(target, eps);
+    }
+
+    public SearchResult<T> knnSearch(T target, int neighbors) {
+        return getSnapshot().getTree().knnSearch(target, neighbors);
+    }
+
+    @Override
+    public void close() {
+        for (Runnable waiting : this.executor.shutdownNow()) {
+            if (waiting instanceof Future) {
+                ((Future<?>) waiting).cancel(false);
+            }
+        }
+    }
+
+}
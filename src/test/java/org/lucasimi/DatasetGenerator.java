@@ -39,4 +39,44 @@ public class DatasetGenerator {
         return array;
     }
 
+    public static List<long[]> randomBinaryDataset(int size, int words) {
+        List<long[]> array = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long[] code = new long[words];
+            for (int j = 0; j < words; j++) {
+                code[j] = rand.nextLong();
+            }
+            array.add(code);
+        }
+        return array;
+    }
+
+    public static List<String> randomStrings(int size, int minLength, int maxLength, String alphabet) {
+        List<String> array = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int length = minLength + rand.nextInt(maxLength - minLength + 1);
+            StringBuilder builder = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet.charAt(rand.nextInt(alphabet.length())));
+            }
+            array.add(builder.toString());
+        }
+        return array;
+    }
+
+    public static List<double[]> clusteredDataset(int size, int dim, int clusters, double min, double bound,
+            double sigma) {
+        List<double[]> centers = randomDataset(clusters, dim, min, bound);
+        List<double[]> array = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            double[] center = centers.get(rand.nextInt(clusters));
+            double[] point = new double[dim];
+            for (int j = 0; j < dim; j++) {
+                point[j] = center[j] + sigma * rand.nextGaussian();
+            }
+            array.add(point);
+        }
+        return array;
+    }
+
 }
@@ -0,0 +1,95 @@
+package org.lucasimi;
+
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+
+    private static final int HALF = 1 << (SUB_BITS - 1);
+
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF + HALF;
+
+    private final long[] counts;
+
+    private long count;
+
+    private long max;
+
+    private double sum;
+
+    public LatencyHistogram() {
+        this.counts = new long[BUCKETS];
+        this.count = 0;
+        this.max = 0;
+        this.sum = 0.0;
+    }
+
+    private static int index(long value) {
+        if (value < 2 * HALF) {
+            return (int) value;
+        } else {
+            int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+            return (shift << (SUB_BITS - 1)) + (int) (value >>> shift);
+        }
+    }
+
+    private static long highestValue(int index) {
+        if (index < 2 * HALF) {
+            return index;
+        } else {
+            int shift = (index >>> (SUB_BITS - 1)) - 1;
+            long mantissa = index - (shift << (SUB_BITS - 1));
+            return ((mantissa + 1) << shift) - 1;
+        }
+    }
+
+    public void record(long value) {
+        long nonNegative = Math.max(0, value);
+        this.counts[index(nonNegative)]++;
+        this.count++;
+        this.max = Math.max(this.max, nonNegative);
+        this.sum += nonNegative;
+    }
+
+    public void recordCorrected(long value, long expectedInterval) {
+        record(value);
+        if (expectedInterval > 0) {
+            for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+                record(missing);
+            }
+        }
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.count += other.count;
+        this.max = Math.max(this.max, other.max);
+        this.sum += other.sum;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getMax() {
+        return this.max;
+    }
+
+    public double getMean() {
+        return this.count == 0 ? 0.0 : this.sum / this.count;
+    }
+
+    public long getPercentile(double percentile) {
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * this.count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts[i];
+            if (seen >= target) {
+                return Math.min(highestValue(i), this.max);
+            }
+        }
+        return this.max;
+    }
+
+}
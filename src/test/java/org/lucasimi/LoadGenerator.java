@@ -0,0 +1,200 @@
+package org.lucasimi;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Drives queries from several threads, either closed-loop or at a fixed
+ * aggregate rate. In fixed-rate mode latencies are measured from the
+ * intended start time of each query, so that stalls are not hidden by the
+ * load generator waiting for them (coordinated omission). In closed-loop mode
+ * the same correction can be applied with an expected interval between
+ * queries.
+ */
+public class LoadGenerator<T> {
+
+    private final List<T> queries;
+
+    private final Consumer<T> operation;
+
+    private int threads = 1;
+
+    private long durationMillis = 1000;
+
+    private long warmupMillis = 0;
+
+    private double rate = 0.0;
+
+    private long expectedInterval = 0;
+
+    public static class Report {
+
+        private final LatencyHistogram histogram;
+
+        private final long elapsedNanos;
+
+        private final long allocatedBytes;
+
+        private final long operations;
+
+        private Report(LatencyHistogram histogram, long elapsedNanos, long allocatedBytes, long operations) {
+            this.histogram = histogram;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.operations = operations;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return this.histogram;
+        }
+
+        public long getOperations() {
+            return this.operations;
+        }
+
+        public double getThroughput() {
+            return this.elapsedNanos == 0 ? 0.0 : this.operations * 1e9 / this.elapsedNanos;
+        }
+
+        public double getAllocatedBytesPerOperation() {
+            if (this.allocatedBytes < 0 || this.operations == 0) {
+                return Double.NaN;
+            } else {
+                return (double) this.allocatedBytes / this.operations;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ops, %.0f ops/s, p50=%.1fus, p99=%.1fus, p999=%.1fus, max=%.1fus, %.0f B/op",
+                    this.operations, getThroughput(), this.histogram.getPercentile(50.0) / 1e3,
+                    this.histogram.getPercentile(99.0) / 1e3, this.histogram.getPercentile(99.9) / 1e3,
+                    this.histogram.getMax() / 1e3, getAllocatedBytesPerOperation());
+        }
+
+    }
+
+    private static class WorkerResult {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private long operations;
+
+        private long allocatedBytes;
+
+    }
+
+    public LoadGenerator(List<T> queries, Consumer<T> operation) {
+        this.queries = queries;
+        this.operation = operation;
+    }
+
+    public LoadGenerator<T> withThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public LoadGenerator<T> withDuration(long durationMillis) {
+        this.durationMillis = durationMillis;
+        return this;
+    }
+
+    public LoadGenerator<T> withWarmup(long warmupMillis) {
+        this.warmupMillis = warmupMillis;
+        return this;
+    }
+
+    public LoadGenerator<T> withRate(double rate) {
+        this.rate = rate;
+        return this;
+    }
+
+    public LoadGenerator<T> withExpectedInterval(long expectedInterval) {
+        this.expectedInterval = expectedInterval;
+        return this;
+    }
+
+    private static long allocatedBytes(ThreadMXBean bean) {
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        } else {
+            return -1;
+        }
+    }
+
+    private WorkerResult work(long start, long end, long warmupEnd, long interval, long offset) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Random rand = new Random();
+        WorkerResult result = new WorkerResult();
+        long allocated = -1;
+        long i = 0;
+        while (true) {
+            long intended = start + offset + i * interval;
+            long now = System.nanoTime();
+            if (interval > 0 && intended > now) {
+                LockSupport.parkNanos(intended - now);
+                now = System.nanoTime();
+            }
+            if (now >= end) {
+                break;
+            }
+            if (allocated < 0 && now >= warmupEnd) {
+                allocated = allocatedBytes(bean);
+            }
+            T query = this.queries.get(rand.nextInt(this.queries.size()));
+            long t0 = interval > 0 ? intended : now;
+            this.operation.accept(query);
+            long t1 = System.nanoTime();
+            if (t0 >= warmupEnd) {
+                if (interval > 0) {
+                    result.histogram.record(t1 - t0);
+                } else {
+                    result.histogram.recordCorrected(t1 - t0, this.expectedInterval);
+                }
+                result.operations++;
+            }
+            i++;
+        }
+        long after = allocatedBytes(bean);
+        result.allocatedBytes = (allocated < 0 || after < 0) ? -1 : after - allocated;
+        return result;
+    }
+
+    public Report run() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        try {
+            long interval = this.rate > 0.0 ? (long) (this.threads * 1e9 / this.rate) : 0;
+            long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+            long warmupEnd = start + TimeUnit.MILLISECONDS.toNanos(this.warmupMillis);
+            long end = warmupEnd + TimeUnit.MILLISECONDS.toNanos(this.durationMillis);
+            List<Future<WorkerResult>> futures = new ArrayList<>(this.threads);
+            for (int t = 0; t < this.threads; t++) {
+                long offset = interval * t / this.threads;
+                futures.add(executor.submit(() -> work(start, end, warmupEnd, interval, offset)));
+            }
+            LatencyHistogram histogram = new LatencyHistogram();
+            long operations = 0;
+            long allocated = 0;
+            for (Future<WorkerResult> future : futures) {
+                WorkerResult result = future.get();
+                histogram.merge(result.histogram);
+                operations += result.operations;
+                allocated = (allocated < 0 || result.allocatedBytes < 0) ? -1 : allocated + result.allocatedBytes;
+            }
+            return new Report(histogram, end - warmupEnd, allocated, operations);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
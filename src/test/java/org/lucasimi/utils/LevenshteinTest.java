@@ -0,0 +1,56 @@
+package org.lucasimi.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.lucasimi.DatasetGenerator;
+
+public class LevenshteinTest {
+
+    private int fullDistance(String x, String y) {
+        int[][] dp = new int[x.length() + 1][y.length() + 1];
+        for (int i = 0; i <= x.length(); i++) {
+            for (int j = 0; j <= y.length(); j++) {
+                if (i == 0 || j == 0) {
+                    dp[i][j] = i + j;
+                } else {
+                    int cost = x.charAt(i - 1) == y.charAt(j - 1) ? 0 : 1;
+                    dp[i][j] = Math.min(dp[i - 1][j - 1] + cost, Math.min(dp[i - 1][j], dp[i][j - 1]) + 1);
+                }
+            }
+        }
+        return dp[x.length()][y.length()];
+    }
+
+    @Test
+    public void testSimple() {
+        Levenshtein levenshtein = new Levenshtein();
+        assertEquals(3.0, levenshtein.eval("kitten", "sitting"), 0.0);
+        assertEquals(0.0, levenshtein.eval("", ""), 0.0);
+        assertEquals(4.0, levenshtein.eval("", "abcd"), 0.0);
+    }
+
+    @Test
+    public void testBounded() {
+        Levenshtein levenshtein = new Levenshtein();
+        List<String> strings = DatasetGenerator.randomStrings(200, 0, 15, "abc");
+        for (String x : strings) {
+            for (String y : strings.subList(0, 20)) {
+                int exact = fullDistance(x, y);
+                assertEquals(exact, levenshtein.eval(x, y), 0.0);
+                for (double bound = 0.0; bound < 8.0; bound += 0.5) {
+                    double dist = levenshtein.eval(x, y, bound);
+                    if (exact <= bound) {
+                        assertEquals(exact, dist, 0.0);
+                    } else {
+                        assertTrue(dist > bound);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.lucasimi.vptree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.lucasimi.DatasetGenerator;
+import org.lucasimi.utils.Hamming;
+
+public class BinaryVPTreeTest {
+
+    private static final int SIZE = 2000;
+
+    private static final int WORDS = 4;
+
+    private List<long[]> nearDuplicates(List<long[]> dataset) {
+        List<long[]> points = new ArrayList<>(dataset);
+        for (long[] code : dataset) {
+            long[] copy = code.clone();
+            copy[0] ^= 1L << 7;
+            copy[WORDS - 1] ^= 1L << 42;
+            points.add(copy);
+        }
+        return points;
+    }
+
+    @Test
+    public void testBallSearch() {
+        List<long[]> dataset = nearDuplicates(DatasetGenerator.randomBinaryDataset(SIZE, WORDS));
+        BinaryVPTree vpTree = new BinaryVPTree.Builder()
+                .withLeafCapacity(8)
+                .build(dataset);
+        assertEquals(dataset.size(), vpTree.size());
+        for (long[] point : dataset.subList(0, 100)) {
+            int eps = 110;
+            Set<Integer> res = new HashSet<>(vpTree.ballSearch(point, eps));
+            for (int i = 0; i < dataset.size(); i++) {
+                assertEquals(Hamming.distance(point, dataset.get(i)) <= eps, res.contains(i));
+            }
+            assertTrue(res.size() >= 2);
+        }
+    }
+
+    @Test
+    public void testKNNSearch() {
+        List<long[]> dataset = nearDuplicates(DatasetGenerator.randomBinaryDataset(SIZE, WORDS));
+        BinaryVPTree vpTree = new BinaryVPTree.Builder()
+                .withLeafCapacity(1)
+                .withRandomPivoting(false)
+                .build(dataset);
+        int neighbors = 10;
+        for (long[] point : dataset.subList(0, 100)) {
+            SearchResult<Integer> res = vpTree.knnSearch(point, neighbors);
+            assertEquals(neighbors, res.size());
+            List<Integer> sorted = new ArrayList<>();
+            for (int i = 0; i < dataset.size(); i++) {
+                sorted.add(Hamming.distance(point, dataset.get(i)));
+            }
+            sorted.sort(null);
+            int knnRadius = sorted.get(neighbors - 1);
+            for (int i = 0; i < res.size(); i++) {
+                assertEquals(sorted.get(i), res.getDistance(i), 0.0);
+                assertEquals(Hamming.distance(point, dataset.get(res.get(i))), res.getDistance(i), 0.0);
+                assertTrue(res.getDistance(i) <= knnRadius);
+            }
+        }
+    }
+
+    @Test
+    public void testBallSearchMaxRadius() {
+        List<long[]> dataset = DatasetGenerator.randomBinaryDataset(1000, WORDS);
+        BinaryVPTree vpTree = new BinaryVPTree.Builder()
+                .withLeafCapacity(1)
+                .build(dataset);
+        assertEquals(dataset.size(), vpTree.ballSearch(dataset.get(0), Integer.MAX_VALUE).size());
+    }
+
+}
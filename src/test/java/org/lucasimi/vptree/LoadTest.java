@@ -0,0 +1,82 @@
+package org.lucasimi.vptree;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+import org.lucasimi.DatasetGenerator;
+import org.lucasimi.LoadGenerator;
+import org.lucasimi.utils.Metric;
+
+public class LoadTest {
+
+    private static final int SIZE = 20000;
+
+    private static final int DIMENSIONS = 16;
+
+    private static final int THREADS = 4;
+
+    private static final long DURATION = 500;
+
+    private static final Logger LOGGER = Logger.getLogger(LoadTest.class.getName());
+
+    private Metric<double[]> metric = new Metric<double[]>() {
+
+        @Override
+        public double eval(double[] x, double[] y) {
+            double sum = 0.0;
+            for (int i = 0; i < x.length; i++) {
+                double delta = x[i] - y[i];
+                sum += delta * delta;
+            }
+            return Math.sqrt(sum);
+        }
+
+    };
+
+    private void load(String name, List<double[]> dataset, double eps, int neighbors)
+            throws InterruptedException, ExecutionException {
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(metric)
+                .withLeafCapacity(16)
+                .build(dataset);
+        List<double[]> queries = dataset.subList(0, 1000);
+        LoadGenerator.Report ball = new LoadGenerator<double[]>(queries, q -> vpTree.ballSearch(q, eps))
+                .withThreads(THREADS)
+                .withWarmup(DURATION / 2)
+                .withDuration(DURATION)
+                .run();
+        LOGGER.info(String.format("%s - ballSearch closed-loop:\t%s", name, ball));
+        double rate = 0.5 * ball.getThroughput();
+        LoadGenerator.Report fixed = new LoadGenerator<double[]>(queries, q -> vpTree.ballSearch(q, eps))
+                .withThreads(THREADS)
+                .withRate(rate)
+                .withDuration(DURATION)
+                .run();
+        LOGGER.info(String.format("%s - ballSearch %.0f ops/s:\t%s", name, rate, fixed));
+        LoadGenerator.Report knn = new LoadGenerator<double[]>(queries, q -> vpTree.knnSearch(q, neighbors))
+                .withThreads(THREADS)
+                .withWarmup(DURATION / 2)
+                .withDuration(DURATION)
+                .run();
+        LOGGER.info(String.format("%s - knnSearch closed-loop: \t%s", name, knn));
+        assertTrue(ball.getOperations() > 0);
+        assertTrue(fixed.getOperations() > 0);
+        assertTrue(knn.getOperations() > 0);
+        assertTrue(ball.getHistogram().getPercentile(50.0) <= ball.getHistogram().getPercentile(99.9));
+    }
+
+    @Test
+    public void loadUniform() throws InterruptedException, ExecutionException {
+        load("uniform", DatasetGenerator.randomDataset(SIZE, DIMENSIONS, 0.0, 1.0), 0.5, 10);
+    }
+
+    @Test
+    public void loadClustered() throws InterruptedException, ExecutionException {
+        load("clustered", DatasetGenerator.clusteredDataset(SIZE, DIMENSIONS, 20, 0.0, 1.0, 0.05), 0.1, 10);
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.lucasimi.vptree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.lucasimi.DatasetGenerator;
+import org.lucasimi.utils.DirectVectors;
+
+public class OffHeapVPTreeTest {
+
+    private static final int SIZE = 2000;
+
+    private static final int DIM = 4;
+
+    private static double euclidean(double[] x, double[] y) {
+        double sum = 0.0;
+        for (int j = 0; j < x.length; j++) {
+            sum += (x[j] - y[j]) * (x[j] - y[j]);
+        }
+        return Math.sqrt(sum);
+    }
+
+    @Test
+    public void testBallSearch() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(SIZE, DIM, 0.0, 1.0);
+        OffHeapVPTree vpTree = new OffHeapVPTree.Builder()
+                .withLeafCapacity(8)
+                .build(dataset);
+        assertEquals(dataset.size(), vpTree.size());
+        assertEquals(DIM, vpTree.dimension());
+        for (double[] point : dataset.subList(0, 100)) {
+            double eps = 0.2;
+            Set<Integer> res = new HashSet<>(vpTree.ballSearch(point, eps));
+            for (int i = 0; i < dataset.size(); i++) {
+                assertEquals(euclidean(point, dataset.get(i)) <= eps, res.contains(i));
+            }
+        }
+    }
+
+    @Test
+    public void testKNNSearch() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(SIZE, DIM, 0.0, 1.0);
+        OffHeapVPTree vpTree = new OffHeapVPTree.Builder()
+                .withLeafCapacity(1)
+                .withRandomPivoting(false)
+                .build(dataset);
+        int neighbors = 10;
+        for (double[] point : dataset.subList(0, 100)) {
+            SearchResult<Integer> res = vpTree.knnSearch(point, neighbors);
+            assertEquals(neighbors, res.size());
+            List<Double> sorted = new ArrayList<>();
+            for (double[] other : dataset) {
+                sorted.add(euclidean(point, other));
+            }
+            sorted.sort(null);
+            double knnRadius = sorted.get(neighbors - 1);
+            for (int i = 0; i < res.size(); i++) {
+                assertEquals(sorted.get(i), res.getDistance(i), 1e-12);
+                assertEquals(euclidean(point, dataset.get(res.get(i))), res.getDistance(i), 1e-12);
+                assertTrue(res.getDistance(i) <= knnRadius);
+            }
+        }
+    }
+
+    @Test
+    public void testIdenticalPoints() {
+        List<double[]> dataset = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            dataset.add(new double[] { 0.5, 0.5, 0.5, 0.5 });
+        }
+        OffHeapVPTree vpTree = new OffHeapVPTree.Builder()
+                .withLeafCapacity(1)
+                .build(dataset);
+        assertEquals(dataset.size(), vpTree.ballSearch(dataset.get(0), 0.0).size());
+        assertEquals(10, vpTree.knnSearch(dataset.get(0), 10).size());
+    }
+
+    @Test
+    public void testChunks() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(100, DIM, 0.0, 1.0);
+        DirectVectors vectors = new DirectVectors(dataset.size(), DIM, 7);
+        for (int i = 0; i < dataset.size(); i++) {
+            vectors.set(i, dataset.get(i));
+        }
+        for (int i = 0; i < dataset.size(); i++) {
+            assertArrayEquals(dataset.get(i), vectors.get(i), 0.0);
+            assertEquals(euclidean(dataset.get(0), dataset.get(i)), vectors.euclidean(dataset.get(0), i), 1e-12);
+        }
+        assertEquals(100L * DIM * Double.BYTES, vectors.bytes());
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.lucasimi.vptree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+import org.lucasimi.DatasetGenerator;
+import org.lucasimi.utils.Metric;
+
+public class VPTreeHolderTest {
+
+    private Metric<Integer> metric = new Metric<Integer>() {
+
+        @Override
+        public double eval(Integer x, Integer y) {
+            return Math.abs(x - y);
+        }
+
+    };
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmpty() {
+        try (VPTreeHolder<Integer> holder = new VPTreeHolder<>(new VPTree.Builder<Integer>().withMetric(metric))) {
+            holder.ballSearch(0, 1.0);
+        }
+    }
+
+    @Test
+    public void testRebuild() throws InterruptedException, ExecutionException {
+        VPTree.Builder<Integer> builder = new VPTree.Builder<Integer>()
+                .withMetric(metric)
+                .withLeafCapacity(10);
+        try (VPTreeHolder<Integer> holder = new VPTreeHolder<>(builder)) {
+            List<Integer> first = DatasetGenerator.linearDataset(1000);
+            VPTreeHolder.Snapshot<Integer> snapshot = holder.rebuild(() -> first).get();
+            assertEquals(1, snapshot.getVersion());
+            assertSame(snapshot, holder.getSnapshot());
+            Collection<Integer> res = holder.ballSearch(500, 2.5);
+            assertEquals(5, res.size());
+            List<Integer> second = DatasetGenerator.linearDataset(10);
+            VPTreeHolder.Snapshot<Integer> next = holder.rebuild(() -> second).get();
+            assertEquals(2, next.getVersion());
+            assertTrue(holder.ballSearch(500, 2.5).isEmpty());
+            assertEquals(5, snapshot.getTree().ballSearch(500, 2.5).size());
+            assertEquals(3, holder.knnSearch(0, 3).size());
+        }
+    }
+
+    @Test
+    public void testSupersededRebuild() throws InterruptedException, ExecutionException {
+        VPTree.Builder<Integer> builder = new VPTree.Builder<Integer>()
+                .withMetric(metric)
+                .withLeafCapacity(10);
+        try (VPTreeHolder<Integer> holder = new VPTreeHolder<>(builder)) {
+            builder.withLeafCapacity(10000);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Future<VPTreeHolder.Snapshot<Integer>> running = holder.rebuild(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return DatasetGenerator.linearDataset(100);
+            });
+            started.await();
+            Future<VPTreeHolder.Snapshot<Integer>> waiting = holder.rebuild(() -> DatasetGenerator.linearDataset(200));
+            Future<VPTreeHolder.Snapshot<Integer>> latest = holder.rebuild(() -> DatasetGenerator.linearDataset(300));
+            assertTrue(waiting.isCancelled());
+            release.countDown();
+            assertEquals(1, running.get().getVersion());
+            VPTreeHolder.Snapshot<Integer> snapshot = latest.get();
+            assertEquals(2, snapshot.getVersion());
+            assertSame(snapshot, holder.getSnapshot());
+            assertEquals(300, snapshot.getTree().stats().getSize());
+            assertTrue(snapshot.getTree().stats().getLeaves() > 1);
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRebuildAfterClose() {
+        VPTreeHolder<Integer> holder = new VPTreeHolder<>(new VPTree.Builder<Integer>().withMetric(metric));
+        holder.close();
+        holder.rebuild(() -> DatasetGenerator.linearDataset(10));
+    }
+
+    @Test
+    public void testCloseCancelsWaiting() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<VPTreeHolder.Snapshot<Integer>> waiting;
+        try (VPTreeHolder<Integer> holder = new VPTreeHolder<>(new VPTree.Builder<Integer>().withMetric(metric))) {
+            holder.rebuild(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return DatasetGenerator.linearDataset(10);
+            });
+            started.await();
+            waiting = holder.rebuild(() -> DatasetGenerator.linearDataset(20));
+        } finally {
+            release.countDown();
+        }
+        assertTrue(waiting.isCancelled());
+    }
+
+}
@@ -1,16 +1,22 @@
 package org.lucasimi.vptree;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 import org.lucasimi.DatasetGenerator;
+import org.lucasimi.utils.Euclidean;
+import org.lucasimi.utils.Levenshtein;
 import org.lucasimi.utils.Metric;
+import org.lucasimi.utils.ScalarQuantizer;
 
 public class VPTreeTest {
 
@@ -27,6 +33,20 @@ public class VPTreeTest {
 
     };
 
+    private Metric<double[]> euclidean = new Metric<double[]>() {
+
+        @Override
+        public double eval(double[] x, double[] y) {
+            double sum = 0.0;
+            for (int i = 0; i < x.length; i++) {
+                double delta = x[i] - y[i];
+                sum += delta * delta;
+            }
+            return Math.sqrt(sum);
+        }
+
+    };
+
     private <T> List<T> knnSearch(Metric<T> metric, Collection<T> dataset, T center, int neighbors) {
         List<T> sorted = new ArrayList<>(dataset);
         sorted.sort((p, q) -> Double.compare(metric.eval(center, p), metric.eval(center, q)));
@@ -137,4 +157,426 @@ public class VPTreeTest {
         testKNNSearch(dataset, metric, vpTree, 20);
     }
 
+    @Test
+    public void testQuantizedInt8() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(1000, 8, 0.0, 1.0);
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(new Euclidean())
+                .withLeafCapacity(50)
+                .withQuantizer(new ScalarQuantizer(ScalarQuantizer.Precision.INT8))
+                .build(dataset);
+        testBallSearch(dataset, euclidean, vpTree, 0.3);
+        testKNNSearch(dataset, euclidean, vpTree, 10);
+    }
+
+    @Test
+    public void testQuantizedFloat16() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(1000, 8, 0.0, 1.0);
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(new Euclidean())
+                .withLeafCapacity(50)
+                .withQuantizer(new ScalarQuantizer(ScalarQuantizer.Precision.FLOAT16))
+                .build(dataset);
+        testBallSearch(dataset, euclidean, vpTree, 0.3);
+        testKNNSearch(dataset, euclidean, vpTree, 10);
+    }
+
+    @Test
+    public void testBatchMetricFarFromOrigin() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(2000, 8, 0.0, 1.0);
+        for (double[] point : dataset) {
+            for (int j = 0; j < point.length; j++) {
+                point[j] += 1e8;
+            }
+        }
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(new Euclidean())
+                .withLeafCapacity(50)
+                .withBatchEvaluation(true)
+                .build(dataset);
+        Metric<double[]> exact = new Euclidean();
+        for (double[] point : dataset.subList(0, 200)) {
+            long expected = dataset.stream().filter(x -> exact.eval(point, x) <= 0.05).count();
+            SearchResult<double[]> res = vpTree.ballSearchWithDistances(point, 0.05);
+            assertEquals(expected, res.size());
+            for (int i = 0; i < res.size(); i++) {
+                assertEquals(exact.eval(point, res.get(i)), res.getDistance(i), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchMetricLattice() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(3000, 8, 0.0, 1.0);
+        for (double[] point : dataset) {
+            for (int j = 0; j < point.length; j++) {
+                point[j] = Math.round(point[j] * 10.0) / 10.0;
+            }
+        }
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(new Euclidean())
+                .withLeafCapacity(32)
+                .withBatchEvaluation(true)
+                .build(dataset);
+        Metric<double[]> exact = new Euclidean();
+        for (double[] point : dataset.subList(0, 200)) {
+            for (double eps : new double[] { 0.1, 0.2, 0.3 }) {
+                long expected = dataset.stream().filter(x -> exact.eval(point, x) <= eps).count();
+                SearchResult<double[]> res = vpTree.ballSearchWithDistances(point, eps);
+                assertEquals(expected, res.size());
+                for (int i = 0; i < res.size(); i++) {
+                    assertEquals(exact.eval(point, res.get(i)), res.getDistance(i), 0.0);
+                }
+            }
+            SearchResult<double[]> knn = vpTree.knnSearch(point, 10);
+            for (int i = 0; i < knn.size(); i++) {
+                assertEquals(exact.eval(point, knn.get(i)), knn.getDistance(i), 0.0);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQuantizedIncompatibleMetric() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(100, 2, 0.0, 1.0);
+        new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withQuantizer(new ScalarQuantizer(ScalarQuantizer.Precision.INT8))
+                .build(dataset);
+    }
+
+    @Test
+    public void testQuantizedWideRange() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(200, 2, 0.0, 1.0);
+        for (int i = 0; i < dataset.size(); i += 2) {
+            dataset.get(i)[0] += 1e6;
+        }
+        for (ScalarQuantizer.Precision precision : ScalarQuantizer.Precision.values()) {
+            VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                    .withMetric(new Euclidean())
+                    .withLeafCapacity(dataset.size())
+                    .withQuantizer(new ScalarQuantizer(precision))
+                    .build(dataset);
+            testBallSearch(dataset, euclidean, vpTree, 0.5);
+            testKNNSearch(dataset, euclidean, vpTree, 10);
+        }
+    }
+
+    @Test
+    public void testBatchMetric() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(1000, 8, 0.0, 1.0);
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(new Euclidean())
+                .withLeafCapacity(50)
+                .withBatchEvaluation(true)
+                .build(dataset);
+        testBallSearch(dataset, euclidean, vpTree, 0.3);
+        testKNNSearch(dataset, euclidean, vpTree, 10);
+    }
+
+    @Test
+    public void testLevenshtein() {
+        List<String> dataset = DatasetGenerator.randomStrings(500, 3, 12, "abcd");
+        Metric<String> levenshtein = new Levenshtein();
+        VPTree<String> vpTree = new VPTree.Builder<String>()
+                .withMetric(levenshtein)
+                .withLeafCapacity(10)
+                .build(dataset);
+        testBallSearch(dataset, levenshtein, vpTree, 2.0);
+        testKNNSearch(dataset, levenshtein, vpTree, 5);
+    }
+
+    @Test
+    public void testTuning() {
+        int size = (int) Math.pow(BASE, MAX_POWER);
+        List<Integer> dataset = DatasetGenerator.randomDataset(size, 0, size);
+        VPTree.Builder<Integer> builder = new VPTree.Builder<Integer>()
+                .withMetric(metric);
+        TuningReport report = builder.tuneBallSearch(dataset.subList(0, 200), dataset.subList(0, 50), 2.5);
+        assertTrue(report.getCandidates().contains(report.getBest()));
+        assertTrue(report.getBest().getEvaluationsPerQuery() > 0.0);
+        testBallSearch(dataset, metric, builder.build(dataset), 2.5);
+        report = builder.tuneKNNSearch(dataset.subList(0, 200), dataset.subList(0, 50), 5);
+        double fastest = report.getCandidates().stream()
+                .mapToDouble(TuningReport.Candidate::getNanosPerQuery)
+                .min()
+                .orElseThrow();
+        assertTrue(report.getBest().getNanosPerQuery() <= 1.05 * fastest);
+        testKNNSearch(dataset, metric, builder.build(dataset), 5);
+    }
+
+    @Test
+    public void testTuningKeepsConfiguration() {
+        List<double[]> dataset = withDuplicates(DatasetGenerator.randomDataset(300, 2, 0.0, 1.0), 300);
+        VPTree.Builder<double[]> builder = new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withDuplicateCompaction(true);
+        builder.tuneBallSearch(dataset, dataset.subList(0, 50), 0.2);
+        VPTree<double[]> vpTree = builder.build(dataset);
+        assertTrue(vpTree.stats().getSize() < dataset.size());
+        testCompaction(dataset, vpTree);
+    }
+
+    @Test
+    public void testBallCover() {
+        int size = (int) Math.pow(BASE, MAX_POWER);
+        List<Integer> dataset = DatasetGenerator.randomDataset(size, 0, size);
+        VPTree<Integer> vpTree = new VPTree.Builder<Integer>()
+                .withMetric(metric)
+                .withLeafCapacity(10)
+                .withLeafRadius(5.0)
+                .build(dataset);
+        double eps = 3.0;
+        Map<Integer, Collection<Integer>> cover = vpTree.ballCover(eps);
+        for (Map.Entry<Integer, Collection<Integer>> ball : cover.entrySet()) {
+            Collection<Integer> members = ball.getValue();
+            assertEquals(vpTree.ballSearch(ball.getKey(), eps).size(), members.size());
+            for (Integer x : members) {
+                assertTrue(metric.eval(ball.getKey(), x) <= eps);
+            }
+        }
+        for (Integer x : dataset) {
+            assertTrue(cover.keySet().stream().anyMatch(c -> metric.eval(c, x) <= eps));
+        }
+        assertTrue(vpTree.getCenters().size() <= dataset.size());
+    }
+
+    @Test
+    public void testBallCoverEqualCenters() {
+        List<Integer> dataset = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            dataset.add(Integer.valueOf(1000));
+        }
+        VPTree<Integer> vpTree = new VPTree.Builder<Integer>()
+                .withMetric(metric)
+                .withLeafCapacity(1)
+                .build(dataset);
+        Map<Integer, Collection<Integer>> cover = vpTree.ballCover(1.0);
+        assertTrue(cover.size() > 1);
+        for (Collection<Integer> members : cover.values()) {
+            assertEquals(dataset.size(), members.size());
+        }
+    }
+
+    @Test
+    public void testStats() {
+        int size = (int) Math.pow(BASE, MAX_POWER);
+        List<Integer> dataset = DatasetGenerator.randomDataset(size, 0, size);
+        VPTree<Integer> vpTree = new VPTree.Builder<Integer>()
+                .withMetric(metric)
+                .withLeafCapacity(10)
+                .withLeafRadius(3.0)
+                .build(dataset);
+        TreeStats stats = vpTree.stats();
+        assertEquals(size, stats.getSize());
+        assertEquals(stats.getNodes() + 1, stats.getLeaves());
+        assertEquals(stats.getLeaves(), stats.getLeafSizes().values().stream().mapToLong(x -> x).sum());
+        assertEquals(0, stats.getQueries());
+        TreeStats parallelStats = vpTree.stats(dataset.subList(0, 100), 2.5, true);
+        assertEquals(stats.getNodes(), parallelStats.getNodes());
+        assertEquals(stats.getCollapsed(), parallelStats.getCollapsed());
+        assertEquals(stats.getLeafDepths(), parallelStats.getLeafDepths());
+        assertEquals(100, parallelStats.getQueries());
+        assertTrue(parallelStats.getPruningEfficiency() > 0.0);
+        assertEquals(1, parallelStats.getLevels().get(0).getVisits() / 100);
+    }
+
+    private List<double[]> withDuplicates(List<double[]> points, int copies) {
+        List<double[]> dataset = new ArrayList<>(points);
+        for (int i = 0; i < copies; i++) {
+            dataset.add(points.get(i % 10).clone());
+        }
+        return dataset;
+    }
+
+    private void testCompaction(List<double[]> dataset, VPTree<double[]> vpTree) {
+        double eps = 0.2;
+        for (double[] point : dataset.subList(0, 20)) {
+            long expected = dataset.stream().filter(x -> euclidean.eval(point, x) <= eps).count();
+            assertEquals(expected, vpTree.ballSearch(point, eps).size());
+            Collection<double[]> compact = vpTree.ballSearch(point, eps, false);
+            assertEquals(expected, compact.stream().mapToInt(vpTree::getMultiplicity).sum());
+            Collection<double[]> neighbors = vpTree.knnSearch(point, 40);
+            assertEquals(40, neighbors.size());
+            double knnRadius = knnRadius(euclidean, dataset, point, 40);
+            for (double[] x : neighbors) {
+                assertTrue(euclidean.eval(point, x) <= knnRadius);
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicateCompaction() {
+        List<double[]> dataset = withDuplicates(DatasetGenerator.randomDataset(300, 2, 0.0, 1.0), 300);
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withLeafCapacity(8)
+                .withDuplicateCompaction(true)
+                .build(dataset);
+        assertTrue(vpTree.stats().getSize() < dataset.size());
+        testCompaction(dataset, vpTree);
+        VPTree<double[]> plain = new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withLeafCapacity(8)
+                .build(dataset);
+        long removed = dataset.size() - vpTree.stats().getSize();
+        assertTrue(vpTree.memoryFootprint() <= plain.memoryFootprint() - 4 * removed);
+        assertEquals(vpTree.memoryFootprint() + 64L * dataset.size(), vpTree.memoryFootprint(64));
+    }
+
+    @Test
+    public void testRepeatedReferences() {
+        List<Integer> dataset = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            dataset.add(10);
+            dataset.add(-10);
+            dataset.add(0);
+            for (int j = 30; j < 37; j++) {
+                dataset.add(j);
+            }
+        }
+        VPTree<Integer> vpTree = new VPTree.Builder<Integer>()
+                .withMetric(metric)
+                .withLeafCapacity(2)
+                .withDuplicateCompaction(true)
+                .build(dataset);
+        assertEquals(80, vpTree.ballSearch(10, 0.5).size());
+        assertEquals(80, vpTree.getMultiplicity(10));
+        assertEquals(dataset.size(), vpTree.ballSearch(0, 100.0).size());
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            words.add("abc");
+            words.add("abd");
+            words.add("xyz");
+            words.add("abcd");
+            words.add("b");
+        }
+        VPTree<String> stringTree = new VPTree.Builder<String>()
+                .withMetric(new Levenshtein())
+                .withLeafCapacity(2)
+                .withDuplicateCompaction(true)
+                .build(words);
+        assertEquals(100, stringTree.ballSearch("abc", 0.0).size());
+        assertEquals(words.size(), stringTree.ballSearch("abc", 10.0).size());
+    }
+
+    @Test
+    public void testDuplicateKey() {
+        List<double[]> dataset = withDuplicates(DatasetGenerator.randomDataset(300, 2, 0.0, 1.0), 300);
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withLeafCapacity(8)
+                .withRandomPivoting(false)
+                .withDuplicateKey(DoubleBuffer::wrap)
+                .build(dataset);
+        assertEquals(300, vpTree.stats().getSize());
+        assertEquals(31, vpTree.getMultiplicity(dataset.get(0)));
+        testCompaction(dataset, vpTree);
+    }
+
+    @Test
+    public void testLowerBound() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(1000, 4, 0.0, 1.0);
+        Metric<double[]> projection = (x, y) -> Math.abs(x[0] - y[0]);
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withLowerBound(projection)
+                .withLeafCapacity(20)
+                .build(dataset);
+        testBallSearch(dataset, euclidean, vpTree, 0.2);
+        testKNNSearch(dataset, euclidean, vpTree, 10);
+        assertTrue(vpTree.getAvoidedEvaluations() > 0);
+        assertTrue(vpTree.getEvaluations() > 0);
+        assertTrue(vpTree.stats(dataset.subList(0, 10), 0.2).getAvoidedEvaluationsPerQuery() > 0.0);
+    }
+
+    @Test
+    public void testKNNSearchMaxRadius() {
+        List<Integer> dataset = DatasetGenerator.linearDataset(1000);
+        VPTree<Integer> vpTree = new VPTree.Builder<Integer>()
+                .withMetric(metric)
+                .withLeafCapacity(10)
+                .build(dataset);
+        for (Integer point : dataset) {
+            Collection<Integer> res = vpTree.knnSearch(point, 20, 3.0);
+            Collection<Integer> ball = vpTree.ballSearch(point, 3.0);
+            assertEquals(ball.size(), res.size());
+            assertTrue(res.containsAll(ball));
+            res = vpTree.knnSearch(point, 4, 3.0);
+            assertEquals(4, res.size());
+            double knnRadius = knnRadius(metric, dataset, point, 4);
+            for (Integer x : res) {
+                assertTrue(metric.eval(point, x) <= knnRadius);
+            }
+        }
+        assertTrue(vpTree.knnSearch(-10, 5, 3.0).isEmpty());
+    }
+
+    @Test
+    public void testSearchResultDistances() {
+        List<double[]> dataset = withDuplicates(DatasetGenerator.randomDataset(500, 3, 0.0, 1.0), 100);
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withLeafCapacity(8)
+                .withDuplicateCompaction(true)
+                .build(dataset);
+        for (double[] point : dataset.subList(0, 50)) {
+            SearchResult<double[]> knn = vpTree.knnSearch(point, 10);
+            assertEquals(10, knn.size());
+            assertEquals(knnRadius(euclidean, dataset, point, 10), knn.getDistance(9), 0.0);
+            SearchResult<double[]> ball = vpTree.ballSearchWithDistances(point, 0.2);
+            assertEquals(vpTree.ballSearch(point, 0.2).size(), ball.size());
+            for (SearchResult<double[]> res : List.of(knn, ball)) {
+                double[] dists = res.getDistances();
+                for (int i = 0; i < res.size(); i++) {
+                    assertEquals(euclidean.eval(point, res.get(i)), dists[i], 0.0);
+                    if (i > 0) {
+                        assertTrue(dists[i - 1] <= dists[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchSearch() {
+        List<double[]> dataset = withDuplicates(DatasetGenerator.randomDataset(1000, 3, 0.0, 1.0), 100);
+        VPTree<double[]> vpTree = new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withLeafCapacity(16)
+                .withDuplicateCompaction(true)
+                .build(dataset);
+        List<double[]> queries = DatasetGenerator.randomDataset(300, 3, 0.0, 1.0);
+        List<SearchResult<double[]>> balls = vpTree.batchBallSearch(queries, 0.15);
+        List<SearchResult<double[]>> knns = vpTree.batchKNNSearch(queries, 10);
+        assertEquals(queries.size(), balls.size());
+        assertEquals(queries.size(), knns.size());
+        for (int i = 0; i < queries.size(); i++) {
+            double[] query = queries.get(i);
+            SearchResult<double[]> ball = vpTree.ballSearchWithDistances(query, 0.15);
+            assertEquals(ball.size(), balls.get(i).size());
+            assertTrue(balls.get(i).containsAll(ball));
+            SearchResult<double[]> knn = knns.get(i);
+            assertEquals(10, knn.size());
+            assertArrayEquals(vpTree.knnSearch(query, 10).getDistances(), knn.getDistances(), 0.0);
+        }
+    }
+
+    @Test
+    public void testMemoryFootprint() {
+        List<double[]> dataset = DatasetGenerator.randomDataset(1000, 8, 0.0, 1.0);
+        VPTree<double[]> plain = new VPTree.Builder<double[]>()
+                .withMetric(euclidean)
+                .withLeafCapacity(50)
+                .build(dataset);
+        VPTree<double[]> quantized = new VPTree.Builder<double[]>()
+                .withMetric(new Euclidean())
+                .withLeafCapacity(50)
+                .withQuantizer(new ScalarQuantizer(ScalarQuantizer.Precision.INT8))
+                .build(dataset);
+        assertTrue(plain.memoryFootprint() >= 4L * dataset.size());
+        assertTrue(quantized.memoryFootprint() >= plain.memoryFootprint() + 8L * dataset.size());
+        assertEquals(dataset.size(), plain.stats().getSize());
+        assertEquals(plain.memoryFootprint() + 80L * dataset.size(), plain.memoryFootprint(80));
+    }
+
 }